@@ -1,5 +1,46 @@
-<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
-<%@ page import="java.util.ArrayList, java.util.HashMap, java.util.Map" %>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" session="false"%>
+<%@ page import="healthcare.PatientDirectory, java.net.URLEncoder, java.nio.charset.StandardCharsets" %>
+<%!
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                case '\'': escaped.append("&#39;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String pageLink(String query, PatientDirectory.SortKey sort, boolean descending, int pageSize,
+                                   String afterKey, Integer afterId) {
+        StringBuilder link = new StringBuilder("?q=").append(URLEncoder.encode(query, StandardCharsets.UTF_8))
+                .append("&sort=").append(sort.name().toLowerCase())
+                .append("&dir=").append(descending ? "desc" : "asc")
+                .append("&size=").append(pageSize);
+        if (afterId != null) {
+            if (afterKey != null) {
+                link.append("&afterKey=").append(URLEncoder.encode(afterKey, StandardCharsets.UTF_8));
+            }
+            link.append("&afterId=").append(afterId);
+        }
+        return escape(link.toString());
+    }
+
+    // Clicking the current sort column flips the direction
+    private static String sortLink(String query, PatientDirectory.SortKey column, PatientDirectory.SortKey sort,
+                                   boolean descending, int pageSize) {
+        return pageLink(query, column, column == sort && !descending, pageSize, null, null);
+    }
+%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -69,6 +110,15 @@
             background-color: #f8d7da;
             color: #721c24;
         }
+        .toolbar input, .toolbar select {
+            width: auto;
+        }
+        .pager {
+            margin-top: 10px;
+        }
+        th a {
+            color: white;
+        }
     </style>
 </head>
 <body>
@@ -76,86 +126,42 @@
         <h1>Healthcare Management System</h1>
         
         <%
-                if (session.getAttribute("patients") == null) {
-            ArrayList<Map<String, String>> patients = new ArrayList<>();
-            
-            // Add some sample data
-            Map<String, String> patient1 = new HashMap<>();
-            patient1.put("id", "1001");
-            patient1.put("name", "John Smith");
-            patient1.put("age", "45");
-            patient1.put("gender", "Male");
-            patient1.put("condition", "Hypertension");
-            patients.add(patient1);
-            
-            Map<String, String> patient2 = new HashMap<>();
-            patient2.put("id", "1002");
-            patient2.put("name", "Jane Doe");
-            patient2.put("age", "35");
-            patient2.put("gender", "Female");
-            patient2.put("condition", "Diabetes");
-            patients.add(patient2);
-            
-            session.setAttribute("patients", patients);
-        }
-        
-                String message = "";
+        // Patients live in the database, not in the session; see PatientDirectory
+        String message = "";
         String messageType = "";
         
         if (request.getMethod().equalsIgnoreCase("post")) {
-            if (request.getParameter("action") != null) {
-                if (request.getParameter("action").equals("add")) {
-                    String id = request.getParameter("id");
-                    String name = request.getParameter("name");
-                    String age = request.getParameter("age");
-                    String gender = request.getParameter("gender");
-                    String condition = request.getParameter("condition");
-                    
-                    @SuppressWarnings("unchecked")
-                    ArrayList<Map<String, String>> patients = (ArrayList<Map<String, String>>) session.getAttribute("patients");
-                    
-                    // Simple validation
-                    if (id == null || id.trim().isEmpty() || name == null || name.trim().isEmpty()) {
-                        message = "Error: Patient ID and Name are required fields.";
-                        messageType = "error";
-                    } else {
-                        // Check if patient with same ID already exists
-                        boolean idExists = false;
-                        for (Map<String, String> patient : patients) {
-                            if (patient.get("id").equals(id)) {
-                                idExists = true;
-                                break;
-                            }
-                        }
-                        
-                        if (idExists) {
-                            message = "Error: Patient with ID " + id + " already exists.";
-                            messageType = "error";
-                        } else {
-                            Map<String, String> newPatient = new HashMap<>();
-                            newPatient.put("id", id);
-                            newPatient.put("name", name);
-                            newPatient.put("age", age);
-                            newPatient.put("gender", gender);
-                            newPatient.put("condition", condition);
-                            patients.add(newPatient);
-                            
-                            message = "Patient added successfully.";
-                            messageType = "success";
-                        }
-                    }
-                } else if (request.getParameter("action").equals("search")) {
-                    // Implementation for search functionality would go here
-                    message = "Search functionality would be implemented here.";
-                    messageType = "info";
-                }
+            if ("add".equals(request.getParameter("action"))) {
+                PatientDirectory.AddResult result = PatientDirectory.addPatient(request.getParameter("id"),
+                        request.getParameter("name"), request.getParameter("age"), request.getParameter("gender"),
+                        request.getParameter("contact"), request.getParameter("condition"));
+                message = result.getMessage();
+                messageType = result.isAdded() ? "success" : "error";
             }
         }
+        
+        String query = request.getParameter("q") == null ? "" : request.getParameter("q").trim();
+        PatientDirectory.SortKey sort = PatientDirectory.SortKey.parse(request.getParameter("sort"));
+        boolean descending = "desc".equalsIgnoreCase(request.getParameter("dir"));
+        int pageSize = PatientDirectory.DEFAULT_PAGE_SIZE;
+        Integer afterId = null;
+        try {
+            if (request.getParameter("size") != null) {
+                pageSize = PatientDirectory.clampPageSize(Integer.parseInt(request.getParameter("size")));
+            }
+            if (request.getParameter("afterId") != null) {
+                afterId = Integer.valueOf(request.getParameter("afterId"));
+            }
+        } catch (NumberFormatException e) {
+            // Ignore a mangled link and show the first page
+            afterId = null;
+        }
+        String afterKey = request.getParameter("afterKey");
         %>
          
         <% if (!message.isEmpty()) { %>
             <div class="message <%= messageType %>">
-                <%= message %>
+                <%= escape(message) %>
             </div>
         <% } %>
         
@@ -167,32 +173,62 @@
         <!-- Patient List Tab -->
         <div id="patientList" class="tab-content">
             <h2>Patient Records</h2>
+            <form method="get" action="" class="toolbar">
+                <input type="hidden" name="sort" value="<%= sort.name().toLowerCase() %>">
+                <input type="hidden" name="dir" value="<%= descending ? "desc" : "asc" %>">
+                <label for="q">Name starts with:</label>
+                <input type="text" id="q" name="q" value="<%= escape(query) %>">
+                <button type="submit">Search</button>
+            </form>
             <table>
                 <thead>
                     <tr>
-                        <th>ID</th>
-                        <th>Name</th>
-                        <th>Age</th>
+                        <th><a href="<%= sortLink(query, PatientDirectory.SortKey.ID, sort, descending, pageSize) %>">ID</a></th>
+                        <th><a href="<%= sortLink(query, PatientDirectory.SortKey.NAME, sort, descending, pageSize) %>">Name</a></th>
+                        <th><a href="<%= sortLink(query, PatientDirectory.SortKey.AGE, sort, descending, pageSize) %>">Age</a></th>
                         <th>Gender</th>
-                        <th>Medical Condition</th>
+                        <th>Contact</th>
+                        <th>Latest Medical Condition</th>
                     </tr>
                 </thead>
                 <tbody>
                     <%
-                    @SuppressWarnings("unchecked")
-                    ArrayList<Map<String, String>> patients = (ArrayList<Map<String, String>>) session.getAttribute("patients");
-                    for (Map<String, String> patient : patients) {
+                    // Rows go to the response as they are read; nothing is held for the whole page
+                    final JspWriter rowsOut = out;
+                    PatientDirectory.Page pageResult = null;
+                    try {
+                        pageResult = PatientDirectory.streamPage(sort, descending, query, afterKey, afterId, pageSize, row -> {
+                            rowsOut.write("<tr><td>");
+                            rowsOut.write(String.valueOf(row.getPatientID()));
+                            rowsOut.write("</td><td>");
+                            rowsOut.write(escape(row.getName()));
+                            rowsOut.write("</td><td>");
+                            rowsOut.write(String.valueOf(row.getAge()));
+                            rowsOut.write("</td><td>");
+                            rowsOut.write(escape(row.getGender()));
+                            rowsOut.write("</td><td>");
+                            rowsOut.write(escape(row.getContactNumber()));
+                            rowsOut.write("</td><td>");
+                            rowsOut.write(escape(row.getLatestCondition()));
+                            rowsOut.write("</td></tr>\n");
+                        });
+                    } catch (java.sql.SQLException e) {
                     %>
-                    <tr>
-                        <td><%= patient.get("id") %></td>
-                        <td><%= patient.get("name") %></td>
-                        <td><%= patient.get("age") %></td>
-                        <td><%= patient.get("gender") %></td>
-                        <td><%= patient.get("condition") %></td>
-                    </tr>
+                    <tr><td colspan="6" class="error">Could not load patients: <%= escape(e.getMessage()) %></td></tr>
                     <% } %>
                 </tbody>
             </table>
+            <div class="pager">
+                <% if (afterId != null) { %>
+                    <a href="<%= pageLink(query, sort, descending, pageSize, null, null) %>">First page</a>
+                <% } %>
+                <% if (pageResult != null && pageResult.hasMore()) { %>
+                    <a href="<%= pageLink(query, sort, descending, pageSize, pageResult.getNextAfterKey(), pageResult.getNextAfterId()) %>">Next page</a>
+                <% } %>
+                <% if (pageResult != null && pageResult.getRowCount() == 0) { %>
+                    No patients found.
+                <% } %>
+            </div>
         </div>
         
         <!-- Add Patient Tab -->
@@ -203,12 +239,12 @@
                 
                 <div class="form-group">
                     <label for="id">Patient ID:</label>
-                    <input type="text" id="id" name="id" required>
+                    <input type="number" id="id" name="id" min="1" required>
                 </div>
                 
                 <div class="form-group">
                     <label for="name">Full Name:</label>
-                    <input type="text" id="name" name="name" required>
+                    <input type="text" id="name" name="name" maxlength="100" required>
                 </div>
                 
                 <div class="form-group">
@@ -225,9 +261,14 @@
                     </select>
                 </div>
                 
+                <div class="form-group">
+                    <label for="contact">Contact Number:</label>
+                    <input type="text" id="contact" name="contact" pattern="[0-9]{10}" maxlength="10" required>
+                </div>
+                
                 <div class="form-group">
                     <label for="condition">Medical Condition:</label>
-                    <input type="text" id="condition" name="condition">
+                    <input type="text" id="condition" name="condition" maxlength="255">
                 </div>
                 
                 <button type="submit">Add Patient</button>
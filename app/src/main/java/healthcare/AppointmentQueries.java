@@ -0,0 +1,203 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Read-side queries over the appointments table.
+ *
+ * Listings use keyset pagination on (appointment_date, appointment_id) and are
+ * served by the (doctor_id, appointment_date) and (patient_id, appointment_date)
+ * indexes created in {@link DatabaseManager#initDatabase()}. They come back as a
+ * lazy stream that fetches one page at a time, so a long listing never holds a
+ * connection between pages or loads every row into memory. A page that cannot
+ * be read throws an IllegalStateException wrapping the SQLException from the
+ * stream, rather than ending it early.
+ */
+class AppointmentQueries {
+
+    /** One appointments row, without loading the patient and doctor behind it. */
+    static final class Summary {
+        private final int appointmentID;
+        private final int patientID;
+        private final int doctorID;
+        private final LocalDate appointmentDate;
+
+        Summary(int appointmentID, int patientID, int doctorID, LocalDate appointmentDate) {
+            this.appointmentID = appointmentID;
+            this.patientID = patientID;
+            this.doctorID = doctorID;
+            this.appointmentDate = appointmentDate;
+        }
+
+        public int getAppointmentID() { return appointmentID; }
+        public int getPatientID() { return patientID; }
+        public int getDoctorID() { return doctorID; }
+        public LocalDate getAppointmentDate() { return appointmentDate; }
+
+        @Override
+        public String toString() {
+            return "Appointment " + appointmentID + " on " + appointmentDate
+                    + " (patient " + patientID + ", doctor " + doctorID + ")";
+        }
+    }
+
+    static final int DEFAULT_PAGE_SIZE = 200;
+
+    // Range limits of the MySQL DATE type, used for open-ended listings
+    private static final LocalDate MIN_DATE = LocalDate.of(1000, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    private static final String COLUMNS = "SELECT appointment_id, patient_id, doctor_id, appointment_date FROM appointments ";
+
+    // Parameters: owner id, far bound, cursor date, cursor date, cursor id, limit
+    private static final String ASCENDING_PAGE = "WHERE %s = ? AND appointment_date <= ? " +
+            "AND (appointment_date > ? OR (appointment_date = ? AND appointment_id > ?)) " +
+            "ORDER BY appointment_date, appointment_id LIMIT ?";
+    private static final String DESCENDING_PAGE = "WHERE %s = ? AND appointment_date >= ? " +
+            "AND (appointment_date < ? OR (appointment_date = ? AND appointment_id < ?)) " +
+            "ORDER BY appointment_date DESC, appointment_id DESC LIMIT ?";
+
+    private static final String DOCTOR_ASCENDING_SQL = COLUMNS + String.format(ASCENDING_PAGE, "doctor_id");
+    private static final String PATIENT_ASCENDING_SQL = COLUMNS + String.format(ASCENDING_PAGE, "patient_id");
+    private static final String PATIENT_DESCENDING_SQL = COLUMNS + String.format(DESCENDING_PAGE, "patient_id");
+
+    private AppointmentQueries() {
+    }
+
+    /** A doctor's appointments between from and to (both inclusive), earliest first. */
+    public static Stream<Summary> getDoctorSchedule(int doctorId, LocalDate from, LocalDate to) {
+        return getDoctorSchedule(doctorId, from, to, DEFAULT_PAGE_SIZE);
+    }
+
+    public static Stream<Summary> getDoctorSchedule(int doctorId, LocalDate from, LocalDate to, int pageSize) {
+        // The cursor starts just before the first appointment on the from date
+        return stream(DOCTOR_ASCENDING_SQL, doctorId, to, from, Integer.MIN_VALUE, pageSize);
+    }
+
+    /** A patient's appointments on or after the given day, earliest first. */
+    public static Stream<Summary> getUpcomingForPatient(int patientId, LocalDate today) {
+        return stream(PATIENT_ASCENDING_SQL, patientId, MAX_DATE, today, Integer.MIN_VALUE, DEFAULT_PAGE_SIZE);
+    }
+
+    /** A patient's appointments before the given day, most recent first. */
+    public static Stream<Summary> getPastForPatient(int patientId, LocalDate today) {
+        return stream(PATIENT_DESCENDING_SQL, patientId, MIN_DATE, today, Integer.MIN_VALUE, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Fetches one page directly, for callers that hand a cursor back to a client.
+     * Pass the date and ID of the last row of the previous page as the cursor.
+     */
+    public static List<Summary> getDoctorSchedulePage(int doctorId, LocalDate afterDate, int afterAppointmentId,
+                                                      LocalDate to, int limit) throws SQLException {
+        return fetchPage(DOCTOR_ASCENDING_SQL, doctorId, to, afterDate, afterAppointmentId, limit);
+    }
+
+    /** Number of appointments a doctor has on each day between from and to (both inclusive). */
+    public static SortedMap<LocalDate, Integer> getDailyCounts(int doctorId, LocalDate from, LocalDate to) throws SQLException {
+        String countSQL = "SELECT appointment_date, COUNT(*) AS total FROM appointments " +
+                "WHERE doctor_id = ? AND appointment_date BETWEEN ? AND ? " +
+                "GROUP BY appointment_date ORDER BY appointment_date";
+        SortedMap<LocalDate, Integer> counts = new TreeMap<>();
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(countSQL)) {
+            pstmt.setInt(1, doctorId);
+            pstmt.setDate(2, java.sql.Date.valueOf(from));
+            pstmt.setDate(3, java.sql.Date.valueOf(to));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getDate("appointment_date").toLocalDate(), rs.getInt("total"));
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static List<Summary> fetchPage(String sql, int ownerId, LocalDate bound, LocalDate cursorDate,
+                                           int cursorId, int limit) throws SQLException {
+        List<Summary> page = new ArrayList<>(limit);
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            java.sql.Date date = java.sql.Date.valueOf(cursorDate);
+            pstmt.setInt(1, ownerId);
+            pstmt.setDate(2, java.sql.Date.valueOf(bound));
+            pstmt.setDate(3, date);
+            pstmt.setDate(4, date);
+            pstmt.setInt(5, cursorId);
+            pstmt.setInt(6, limit);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                page.add(new Summary(rs.getInt("appointment_id"), rs.getInt("patient_id"),
+                        rs.getInt("doctor_id"), rs.getDate("appointment_date").toLocalDate()));
+            }
+        }
+        return page;
+    }
+
+    private static Stream<Summary> stream(String sql, int ownerId, LocalDate bound, LocalDate startDate,
+                                          int startId, int pageSize) {
+        return StreamSupport.stream(new PageSpliterator(sql, ownerId, bound, startDate, startId, pageSize), false);
+    }
+
+    /** Walks a keyset-paginated query, fetching the next page only when the current one is used up. */
+    private static final class PageSpliterator extends Spliterators.AbstractSpliterator<Summary> {
+        private final String sql;
+        private final int ownerId;
+        private final LocalDate bound;
+        private final int pageSize;
+        private LocalDate cursorDate;
+        private int cursorId;
+        private Iterator<Summary> page = Collections.emptyIterator();
+        private boolean exhausted;
+
+        PageSpliterator(String sql, int ownerId, LocalDate bound, LocalDate startDate, int startId, int pageSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.sql = sql;
+            this.ownerId = ownerId;
+            this.bound = bound;
+            this.cursorDate = startDate;
+            this.cursorId = startId;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Summary> action) {
+            if (!page.hasNext()) {
+                if (exhausted) {
+                    return false;
+                }
+                List<Summary> next;
+                try {
+                    next = fetchPage(sql, ownerId, bound, cursorDate, cursorId, pageSize);
+                } catch (SQLException e) {
+                    // Ending the stream here would pass off the rows read so far as the whole listing
+                    exhausted = true;
+                    throw new IllegalStateException("Error retrieving appointments for " + ownerId, e);
+                }
+                exhausted = next.size() < pageSize;
+                if (next.isEmpty()) {
+                    return false;
+                }
+                Summary last = next.get(next.size() - 1);
+                cursorDate = last.getAppointmentDate();
+                cursorId = last.getAppointmentID();
+                page = next.iterator();
+            }
+            action.accept(page.next());
+            return true;
+        }
+    }
+}
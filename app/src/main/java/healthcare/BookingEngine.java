@@ -0,0 +1,225 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Books appointments into fixed time slots without double booking a doctor.
+ *
+ * A doctor's day is divided into slotsPerDay slots of slotMinutes each, starting
+ * at dayStart, and a doctor takes at most their daily capacity of appointments
+ * per day. Bookings for the same doctor are serialised by one of a fixed set of
+ * striped locks, so bookers for different doctors rarely wait on each other. The
+ * unique (doctor_id, appointment_date, slot_index) index is the backstop when
+ * several application instances book against the same database: a booker that
+ * loses the race for a slot re-reads the day and tries the next free one.
+ * Appointment IDs are generated by the database.
+ */
+class BookingEngine {
+
+    private static final int STRIPES = 256;
+    private static final int MAX_ATTEMPTS = 5;
+
+    static final String TAKEN_SLOTS_SQL = "SELECT slot_index FROM appointments WHERE doctor_id = ? AND appointment_date = ?";
+    private static final String INSERT_BOOKING_SQL = "INSERT INTO appointments (patient_id, doctor_id, appointment_date, slot_index) VALUES (?, ?, ?, ?)";
+
+    private final LocalTime dayStart;
+    private final int slotMinutes;
+    private final int slotsPerDay;
+    private final int defaultCapacity;
+    private final Map<Integer, Integer> capacityOverrides = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    BookingEngine(LocalTime dayStart, int slotMinutes, int slotsPerDay, int defaultCapacity) {
+        if (slotMinutes < 1 || slotsPerDay < 1) {
+            throw new IllegalArgumentException("Slot length and slots per day must be positive");
+        }
+        if (defaultCapacity < 0) {
+            throw new IllegalArgumentException("Daily capacity cannot be negative");
+        }
+        if (dayStart.toSecondOfDay() / 60 + (long) slotMinutes * slotsPerDay > 24 * 60) {
+            throw new IllegalArgumentException("Slots must fit within one day");
+        }
+        this.dayStart = dayStart;
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = slotsPerDay;
+        this.defaultCapacity = Math.min(defaultCapacity, slotsPerDay);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /** Slots from healthcare.booking.* system properties; by default 16 half-hour slots from 09:00. */
+    static BookingEngine fromSystemProperties() {
+        LocalTime start = LocalTime.parse(System.getProperty("healthcare.booking.dayStart", "09:00"));
+        int minutes = Integer.getInteger("healthcare.booking.slotMinutes", 30);
+        int slots = Integer.getInteger("healthcare.booking.slotsPerDay", 16);
+        int capacity = Integer.getInteger("healthcare.booking.dailyCapacity", slots);
+        return new BookingEngine(start, minutes, slots, capacity);
+    }
+
+    public void setDailyCapacity(int doctorId, int capacity) {
+        capacityOverrides.put(doctorId, Math.max(0, Math.min(capacity, slotsPerDay)));
+    }
+
+    public int getDailyCapacity(int doctorId) {
+        return capacityOverrides.getOrDefault(doctorId, defaultCapacity);
+    }
+
+    public int getSlotsPerDay() {
+        return slotsPerDay;
+    }
+
+    public LocalTime getSlotStart(int slotIndex) {
+        return dayStart.plusMinutes((long) slotIndex * slotMinutes);
+    }
+
+    /** Maps a start time onto its slot, or -1 if it is not the start of a slot. */
+    public int getSlotIndex(LocalTime time) {
+        long minutes = Duration.between(dayStart, time).toMinutes();
+        if (minutes < 0 || minutes % slotMinutes != 0 || time.getSecond() != 0 || time.getNano() != 0) {
+            return -1;
+        }
+        long index = minutes / slotMinutes;
+        return index < slotsPerDay ? (int) index : -1;
+    }
+
+    /**
+     * Books the patient with the doctor on the given date. With a preferred time only
+     * that slot is tried; without one the earliest free slot is taken.
+     */
+    public Appointment book(Patient patient, Doctor doctor, String date, LocalTime preferredTime)
+            throws InvalidDateFormatException, SlotUnavailableException, SQLException {
+        // Validates the date the same way as a directly created appointment
+        LocalDate day = Validation.parseDate(Validation.APPOINTMENT_DATE, date);
+        int preferredSlot = -1;
+        if (preferredTime != null) {
+            preferredSlot = getSlotIndex(preferredTime);
+            if (preferredSlot < 0) {
+                throw new SlotUnavailableException(preferredTime + " is not the start of a bookable slot");
+            }
+        }
+
+        int doctorId = doctor.getDoctorID();
+        int capacity = getDailyCapacity(doctorId);
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement taken = conn.prepareStatement(TAKEN_SLOTS_SQL);
+             PreparedStatement insert = conn.prepareStatement(INSERT_BOOKING_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                BitSet used = new BitSet(slotsPerDay);
+                int booked = readTakenSlots(taken, doctorId, day, used);
+                if (booked >= capacity) {
+                    throw new SlotUnavailableException("Dr. " + doctor.getName() + " is fully booked on " + date);
+                }
+                int slot = preferredSlot >= 0 ? preferredSlot : used.nextClearBit(0);
+                if (slot >= slotsPerDay) {
+                    throw new SlotUnavailableException("No free slot with Dr. " + doctor.getName() + " on " + date);
+                }
+                if (used.get(slot)) {
+                    throw new SlotUnavailableException("The " + getSlotStart(slot) + " slot with Dr. "
+                            + doctor.getName() + " on " + date + " is already taken");
+                }
+
+                insert.setInt(1, patient.getPatientID());
+                insert.setInt(2, doctorId);
+                insert.setDate(3, java.sql.Date.valueOf(day));
+                insert.setInt(4, slot);
+                try {
+                    insert.executeUpdate();
+                } catch (SQLException e) {
+                    if (isDuplicateKey(e)) {
+                        // Another instance took the slot between our read and insert; look again
+                        continue;
+                    }
+                    throw e;
+                }
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("Database did not return the new appointment ID");
+                    }
+                    Appointment appointment = new Appointment(keys.getInt(1), patient, doctor, day);
+                    appointment.assignSlot(slot, getSlotStart(slot));
+                    return appointment;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        throw new SlotUnavailableException("Could not reserve a slot with Dr. " + doctor.getName()
+                + " on " + date + " after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    // Marks used slots and returns how many appointments the doctor already has that day
+    int readTakenSlots(PreparedStatement taken, int doctorId, LocalDate day, BitSet used) throws SQLException {
+        taken.setInt(1, doctorId);
+        taken.setDate(2, java.sql.Date.valueOf(day));
+        int booked = 0;
+        try (ResultSet rs = taken.executeQuery()) {
+            while (rs.next()) {
+                int slot = rs.getInt(1);
+                if (!rs.wasNull() && slot >= 0 && slot < slotsPerDay) {
+                    used.set(slot);
+                }
+                // Appointments created before slots existed still count against capacity
+                booked++;
+            }
+        }
+        return booked;
+    }
+
+    /**
+     * Takes the booking locks of all the given doctors, for callers that move
+     * appointments between doctors and must not race with new bookings. Stripes are
+     * taken in index order, and book() never holds more than one, so this cannot
+     * deadlock. Release with {@link #unlockAll(List)}.
+     */
+    List<ReentrantLock> lockAll(Collection<Integer> doctorIds) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (int doctorId : doctorIds) {
+            stripes.add(stripeFor(doctorId));
+        }
+        List<ReentrantLock> held = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            held.add(locks[stripe]);
+        }
+        return held;
+    }
+
+    static void unlockAll(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(int doctorId) {
+        return locks[stripeFor(doctorId)];
+    }
+
+    private static int stripeFor(int doctorId) {
+        int h = doctorId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // Only a unique-key violation (MySQL error 1062, SQLState 23505 elsewhere) means the slot was
+    // taken; foreign-key and other integrity errors in SQLState class 23 are real failures
+    static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+}
@@ -0,0 +1,357 @@
+package healthcare;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loads patients, doctors or appointments from CSV in large numbers.
+ *
+ * Rows are validated with the same rules as the interactive menu, inserted with
+ * JDBC batching and committed once per chunk. A row that fails validation or is
+ * refused by the database is written to the rejects file with its line number and
+ * the reason, and the load carries on with the next row.
+ */
+class BulkLoader {
+
+    enum RecordType {
+        PATIENTS(DatabaseManager.INSERT_PATIENT_SQL, "patient_id,name,age,gender,contact_number[,medical_history]"),
+        DOCTORS(DatabaseManager.INSERT_DOCTOR_SQL, "doctor_id,name,specialization,contact_number"),
+        APPOINTMENTS(DatabaseManager.INSERT_APPOINTMENT_SQL, "appointment_id,patient_id,doctor_id,appointment_date");
+
+        final String sql;
+        final String columns;
+
+        RecordType(String sql, String columns) {
+            this.sql = sql;
+            this.columns = columns;
+        }
+
+        static RecordType parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown record type '" + name + "', expected patients, doctors or appointments");
+            }
+        }
+    }
+
+    /** Outcome of one load. */
+    static final class Report {
+        private final RecordType type;
+        private final long rowsRead;
+        private final long rowsLoaded;
+        private final long rowsRejected;
+        private final long elapsedNanos;
+
+        Report(RecordType type, long rowsRead, long rowsLoaded, long rowsRejected, long elapsedNanos) {
+            this.type = type;
+            this.rowsRead = rowsRead;
+            this.rowsLoaded = rowsLoaded;
+            this.rowsRejected = rowsRejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public RecordType getType() { return type; }
+        public long getRowsRead() { return rowsRead; }
+        public long getRowsLoaded() { return rowsLoaded; }
+        public long getRowsRejected() { return rowsRejected; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rowsLoaded * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: read %d, loaded %d, rejected %d in %.2f s (%.0f rows/s)",
+                    type.name().toLowerCase(Locale.ROOT), rowsRead, rowsLoaded, rowsRejected,
+                    elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+        }
+    }
+
+    private static final class PendingRow {
+        final long lineNumber;
+        final String line;
+        final List<String> fields;
+
+        PendingRow(long lineNumber, String line, List<String> fields) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final int chunkSize;
+
+    BulkLoader(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public Report load(RecordType type, Path csv, Path rejects) throws IOException, SQLException {
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+             Writer out = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            return load(type, in, out);
+        }
+    }
+
+    /**
+     * Streams the CSV into the table for the given type. Only one chunk of rows is
+     * held in memory at a time. A header line is skipped if its first field is not a number.
+     */
+    public Report load(RecordType type, Reader csv, Writer rejects) throws IOException, SQLException {
+        BufferedReader in = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        rejects.write("line,reason,record\n");
+        long start = System.nanoTime();
+        long lineNumber = 0;
+        long rowsRead = 0;
+        long[] loadedAndRejected = new long[2];
+        List<PendingRow> pending = new ArrayList<>(chunkSize);
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(type.sql);
+             PreparedStatement conditionStmt = type == RecordType.PATIENTS
+                     ? conn.prepareStatement(DatabaseManager.INSERT_CONDITION_SQL) : null) {
+            conn.setAutoCommit(false);
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> fields = parseCsvLine(line);
+                if (lineNumber == 1 && !isInteger(fields.get(0))) {
+                    continue;
+                }
+                rowsRead++;
+                try {
+                    bind(type, fields, pstmt, conditionStmt);
+                    pstmt.addBatch();
+                    pending.add(new PendingRow(lineNumber, line, fields));
+                } catch (ValidationException e) {
+                    reject(rejects, lineNumber, e.getError().toString(), line, loadedAndRejected);
+                } catch (IllegalArgumentException e) {
+                    reject(rejects, lineNumber, e.getMessage(), line, loadedAndRejected);
+                }
+                if (pending.size() >= chunkSize) {
+                    flush(type, conn, pstmt, conditionStmt, pending, rejects, loadedAndRejected);
+                }
+            }
+            flush(type, conn, pstmt, conditionStmt, pending, rejects, loadedAndRejected);
+        }
+        rejects.flush();
+        Report report = new Report(type, rowsRead, loadedAndRejected[0], loadedAndRejected[1], System.nanoTime() - start);
+        if (report.getRowsLoaded() > 0) {
+            // Imported rows skip the per-row hooks, and their IDs can be below the report watermarks
+            DatabaseManager.getReports().invalidate();
+            if (type != RecordType.APPOINTMENTS) {
+                DatabaseManager.rebuildSearchIndex();
+            }
+        }
+        return report;
+    }
+
+    // Commits one chunk; if the batch fails, retries it row by row so only the bad rows are rejected
+    private void flush(RecordType type, Connection conn, PreparedStatement pstmt, PreparedStatement conditionStmt,
+                       List<PendingRow> pending, Writer rejects, long[] loadedAndRejected) throws SQLException, IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            pstmt.executeBatch();
+            if (conditionStmt != null) {
+                conditionStmt.executeBatch();
+            }
+            conn.commit();
+            loadedAndRejected[0] += pending.size();
+        } catch (BatchUpdateException e) {
+            conn.rollback();
+            pstmt.clearBatch();
+            if (conditionStmt != null) {
+                conditionStmt.clearBatch();
+            }
+            for (PendingRow row : pending) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    bind(type, row.fields, pstmt, conditionStmt);
+                    pstmt.executeUpdate();
+                    if (conditionStmt != null) {
+                        conditionStmt.executeBatch();
+                    }
+                    conn.releaseSavepoint(savepoint);
+                    loadedAndRejected[0]++;
+                } catch (SQLException rowError) {
+                    conn.rollback(savepoint);
+                    if (conditionStmt != null) {
+                        conditionStmt.clearBatch();
+                    }
+                    reject(rejects, row.lineNumber, rowError.getMessage(), row.line, loadedAndRejected);
+                } catch (ValidationException ignored) {
+                    // Already validated when the row was read.
+                }
+            }
+            conn.commit();
+        }
+        pending.clear();
+    }
+
+    // Validates one row and binds it; a patient's conditions are added to conditionStmt's batch
+    private static void bind(RecordType type, List<String> fields, PreparedStatement pstmt, PreparedStatement conditionStmt)
+            throws SQLException, ValidationException {
+        switch (type) {
+            case PATIENTS: {
+                requireFields(fields, 5, 6);
+                Patient patient = new Patient(parseId(fields.get(0), "patient_id"), fields.get(1),
+                        parseInt(fields.get(2), "age"), fields.get(3), fields.get(4));
+                if (fields.size() > 5 && !fields.get(5).isEmpty()) {
+                    for (String condition : Patient.splitHistory(fields.get(5))) {
+                        patient.addMedicalCondition(condition);
+                    }
+                }
+                DatabaseManager.bindPatient(pstmt, patient);
+                DatabaseManager.bindConditions(conditionStmt, patient.getPatientID(), patient.getMedicalConditions());
+                break;
+            }
+            case DOCTORS: {
+                requireFields(fields, 4, 4);
+                Doctor doctor = new Doctor(parseId(fields.get(0), "doctor_id"), fields.get(1), fields.get(2), fields.get(3));
+                DatabaseManager.bindDoctor(pstmt, doctor);
+                break;
+            }
+            case APPOINTMENTS: {
+                requireFields(fields, 4, 4);
+                LocalDate date = Validation.parseDate(Validation.APPOINTMENT_DATE, fields.get(3));
+                pstmt.setInt(1, parseId(fields.get(0), "appointment_id"));
+                pstmt.setInt(2, parseId(fields.get(1), "patient_id"));
+                pstmt.setInt(3, parseId(fields.get(2), "doctor_id"));
+                pstmt.setDate(4, java.sql.Date.valueOf(date));
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unhandled record type " + type);
+        }
+    }
+
+    private static void requireFields(List<String> fields, int min, int max) {
+        if (fields.size() < min || fields.size() > max) {
+            throw new IllegalArgumentException("Expected " + (min == max ? String.valueOf(min) : min + "-" + max)
+                    + " fields but found " + fields.size());
+        }
+    }
+
+    private static int parseId(String value, String column) {
+        int id = parseInt(value, column);
+        if (id <= 0) {
+            throw new IllegalArgumentException(column + " must be a positive number");
+        }
+        return id;
+    }
+
+    private static int parseInt(String value, String column) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a number: '" + value + "'");
+        }
+    }
+
+    private static boolean isInteger(String value) {
+        try {
+            Integer.parseInt(value.trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void reject(Writer rejects, long lineNumber, String reason, String line, long[] loadedAndRejected)
+            throws IOException {
+        loadedAndRejected[1]++;
+        rejects.write(lineNumber + "," + quote(reason) + "," + quote(line) + "\n");
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /** Splits one CSV line; fields may be wrapped in double quotes, with "" as an escaped quote. */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /** Handles "java Healthcare import <type> <file.csv> [--chunk-size N] [--rejects file]". */
+    static void runImport(String[] args) throws IOException, SQLException {
+        if (args.length < 3) {
+            System.out.println("Usage: java Healthcare import <patients|doctors|appointments> <file.csv> [--chunk-size N] [--rejects file]");
+            return;
+        }
+        RecordType type = RecordType.parse(args[1]);
+        Path csv = Paths.get(args[2]);
+        Path rejects = Paths.get(args[2] + ".rejects.csv");
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--chunk-size") && i + 1 < args.length) {
+                chunkSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--rejects") && i + 1 < args.length) {
+                rejects = Paths.get(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        System.out.println("Importing " + type.name().toLowerCase(Locale.ROOT) + " (" + type.columns + ") from " + csv);
+        Report report = new BulkLoader(chunkSize).load(type, csv, rejects);
+        System.out.println(report);
+        if (report.getRowsRejected() > 0) {
+            System.out.println("Rejected rows written to " + rejects);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package healthcare;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A small bounded pool of physical JDBC connections.
+ *
+ * Callers get a wrapper whose close() hands the physical connection back to the
+ * pool instead of closing it, so existing try-with-resources code keeps working.
+ * Idle connections are validated before reuse once they have been idle for longer
+ * than the validation interval, and callers wait at most the acquire timeout when
+ * every connection is in use. Each physical connection keeps a {@link StatementCache}
+ * so prepareStatement(sql) only parses a given SQL string once per connection.
+ */
+class ConnectionPool {
+
+    /** Opens a new physical connection. Lets tests plug in an in-memory stand-in. */
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /** Point-in-time view of the pool counters. */
+    static final class Stats {
+        private final int active;
+        private final int idle;
+        private final int waiting;
+        private final long created;
+        private final long destroyed;
+        private final long timeouts;
+
+        Stats(int active, int idle, int waiting, long created, long destroyed, long timeouts) {
+            this.active = active;
+            this.idle = idle;
+            this.waiting = waiting;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.timeouts = timeouts;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getWaiting() { return waiting; }
+        public long getCreated() { return created; }
+        public long getDestroyed() { return destroyed; }
+        public long getTimeouts() { return timeouts; }
+
+        @Override
+        public String toString() {
+            return "active=" + active + ", idle=" + idle + ", waiting=" + waiting
+                    + ", created=" + created + ", destroyed=" + destroyed + ", timeouts=" + timeouts;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long acquireTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    // Most recently returned connection first, so rarely used ones age out of the way.
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private int total;
+    private int active;
+    private int waiting;
+    private long created;
+    private long destroyed;
+    private long timeouts;
+    private boolean closed;
+
+    ConnectionPool(String url, String user, String password, int maxSize, long acquireTimeoutMillis,
+                   int statementCacheSize) {
+        this(() -> DriverManager.getConnection(url, user, password), maxSize, acquireTimeoutMillis, 30000L, 5,
+                statementCacheSize);
+    }
+
+    ConnectionPool(ConnectionFactory factory, int maxSize, long acquireTimeoutMillis,
+                   long validationIntervalMillis, int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+        while (true) {
+            PooledConnection candidate;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed", "08003");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null || total < maxSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLTransientConnectionException("Timed out after "
+                                + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos)
+                                + " ms waiting for a database connection (pool size " + maxSize + ")", "08001");
+                    }
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", "08001", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+                if (candidate == null) {
+                    total++;
+                }
+                active++;
+            } finally {
+                lock.unlock();
+            }
+
+            // Opening and validating happen outside the lock so a slow server
+            // doesn't block callers that could reuse an idle connection.
+            if (candidate == null) {
+                Connection physical = null;
+                int isolation;
+                try {
+                    physical = factory.open();
+                    isolation = physical.getTransactionIsolation();
+                } catch (SQLException | RuntimeException e) {
+                    if (physical != null) {
+                        closeQuietly(physical);
+                    }
+                    discard(null);
+                    throw e;
+                }
+                lock.lock();
+                try {
+                    created++;
+                } finally {
+                    lock.unlock();
+                }
+                return new PooledConnection(physical, isolation).checkout();
+            }
+            if (isUsable(candidate)) {
+                return candidate.checkout();
+            }
+            discard(candidate);
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(active, idle.size(), waiting, created, destroyed, timeouts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public StatementCache.Stats getStatementCacheStats() {
+        return statementCounters.snapshot();
+    }
+
+    /** Closes idle connections now; connections still in use are closed when they are returned. */
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            destroyed += idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pc : toClose) {
+            pc.closePhysical();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.nanoTime() - pc.lastReturnedNanos < validationIntervalNanos) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        boolean reusable = pc.reset();
+        lock.lock();
+        try {
+            active--;
+            if (reusable && !closed) {
+                pc.lastReturnedNanos = System.nanoTime();
+                idle.addFirst(pc);
+                available.signal();
+                return;
+            }
+            total--;
+            destroyed++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        pc.closePhysical();
+    }
+
+    private void discard(PooledConnection pc) {
+        lock.lock();
+        try {
+            active--;
+            total--;
+            if (pc != null) {
+                destroyed++;
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (pc != null) {
+            pc.closePhysical();
+        }
+    }
+
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // Nothing useful to do with a connection we are throwing away.
+        }
+    }
+
+    /** A physical connection owned by the pool. */
+    private final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        // The level the driver opened the connection with; borrowers that change it get it put back
+        final int isolation;
+        boolean isolationChanged;
+        long lastReturnedNanos = System.nanoTime();
+
+        PooledConnection(Connection physical, int isolation) {
+            this.physical = physical;
+            this.isolation = isolation;
+            this.statements = new StatementCache(physical, statementCacheSize, statementCounters);
+        }
+
+        Connection checkout() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Handle(this));
+        }
+
+        /**
+         * Rolls back anything the borrower left open and restores the isolation level;
+         * false means the connection should be dropped.
+         */
+        boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (isolationChanged) {
+                    physical.setTransactionIsolation(isolation);
+                    isolationChanged = false;
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            statements.closeAll();
+            closeQuietly(physical);
+        }
+    }
+
+    /** The borrower's view of a pooled connection; valid until close() is called once. */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection owner;
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean closed;
+
+        Handle(PooledConnection owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        closeStatements();
+                        release(owner);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || owner.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + owner.physical + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed", "08003");
+            }
+            if (name.equals("setTransactionIsolation")) {
+                owner.isolationChanged = true;
+            }
+            Object result;
+            if (name.equals("prepareStatement") && args.length == 1) {
+                PreparedStatement cached = owner.statements.prepare((String) args[0], (Connection) proxy);
+                statements.add(cached);
+                return cached;
+            }
+            try {
+                result = method.invoke(owner.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                statements.add((Statement) result);
+            }
+            return result;
+        }
+
+        // Statements the borrower forgot to close would otherwise pile up on the physical connection.
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // Already broken; the connection reset decides whether it is reused.
+                }
+            }
+            statements.clear();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Removes doctors and their appointments in one transaction.
+ *
+ * Rows are deleted with set-based statements over the whole batch of doctor IDs
+ * rather than one doctor at a time. Future appointments can optionally be moved to
+ * another doctor with the same specialization who has the same slot free that day
+ * and is under their daily capacity. Those moves go through the BookingEngine's
+ * slot rules and locks. Appointments that cannot be moved are deleted with the
+ * rest. Either everything happens or nothing does.
+ */
+final class DoctorRemoval {
+
+    /** Rows affected by a removal and the time spent in each phase. */
+    static final class Report {
+        private final int doctorsRequested;
+        private final int doctorsDeleted;
+        private final int appointmentsDeleted;
+        private final int appointmentsReassigned;
+        private final Map<String, Long> phaseNanos;
+
+        Report(int doctorsRequested, int doctorsDeleted, int appointmentsDeleted, int appointmentsReassigned,
+               Map<String, Long> phaseNanos) {
+            this.doctorsRequested = doctorsRequested;
+            this.doctorsDeleted = doctorsDeleted;
+            this.appointmentsDeleted = appointmentsDeleted;
+            this.appointmentsReassigned = appointmentsReassigned;
+            this.phaseNanos = Collections.unmodifiableMap(phaseNanos);
+        }
+
+        public int getDoctorsRequested() { return doctorsRequested; }
+        public int getDoctorsDeleted() { return doctorsDeleted; }
+        public int getAppointmentsDeleted() { return appointmentsDeleted; }
+        public int getAppointmentsReassigned() { return appointmentsReassigned; }
+
+        /** Phases in the order they ran: lock, reassign (if asked for), appointments, doctors, commit. */
+        public Map<String, Long> getPhaseNanos() { return phaseNanos; }
+
+        public long getTotalNanos() {
+            long total = 0;
+            for (long nanos : phaseNanos.values()) {
+                total += nanos;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder phases = new StringBuilder();
+            for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+                phases.append(phases.length() == 0 ? "" : ", ")
+                        .append(String.format("%s %.1f ms", phase.getKey(), phase.getValue() / 1_000_000.0));
+            }
+            return String.format("%d of %d doctor(s) deleted, %d appointment(s) deleted, %d reassigned in %.1f ms (%s)",
+                    doctorsDeleted, doctorsRequested, appointmentsDeleted, appointmentsReassigned,
+                    getTotalNanos() / 1_000_000.0, phases);
+        }
+    }
+
+    // Keeps IN lists well under driver and server parameter limits
+    private static final int IN_CHUNK = 500;
+
+    private DoctorRemoval() {
+    }
+
+    /**
+     * Deletes the doctors and their appointments. With an engine, appointments from
+     * today on are first moved to other doctors where possible; pass null to drop them.
+     */
+    static Report removeDoctors(Collection<Integer> doctorIds, BookingEngine reassignWith, LocalDate today) throws SQLException {
+        Set<Integer> requested = new TreeSet<>(doctorIds);
+        Map<String, Long> phases = new LinkedHashMap<>();
+        List<ReentrantLock> held = Collections.emptyList();
+        long start = System.nanoTime();
+        Set<Integer> targets = Collections.emptySet();
+        if (reassignWith != null) {
+            // book() takes its stripe lock before a pooled connection, so the stripes have to be
+            // taken here before ours too. The removed doctors' stripes are included so nobody
+            // books with them while their appointments are being moved.
+            targets = findTargets(requested);
+            Set<Integer> locked = new TreeSet<>(requested);
+            locked.addAll(targets);
+            held = reassignWith.lockAll(locked);
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, String> specializations = readDoctors(conn, requested, true);
+                start = endPhase(phases, "lock", start);
+
+                int reassigned = 0;
+                if (reassignWith != null && !specializations.isEmpty()) {
+                    Map<String, List<Integer>> candidates = loadCandidates(conn, specializations);
+                    for (List<Integer> ids : candidates.values()) {
+                        // Doctors added since the stripes were locked are not covered by them
+                        ids.retainAll(targets);
+                    }
+                    reassigned = reassign(conn, reassignWith, specializations, candidates, today);
+                    start = endPhase(phases, "reassign", start);
+                }
+
+                int appointments = deleteIn(conn, "DELETE FROM appointments WHERE doctor_id IN ", specializations.keySet());
+                start = endPhase(phases, "appointments", start);
+                int doctors = deleteIn(conn, "DELETE FROM doctors WHERE doctor_id IN ", specializations.keySet());
+                start = endPhase(phases, "doctors", start);
+                conn.commit();
+                endPhase(phases, "commit", start);
+                return new Report(requested.size(), doctors, appointments, reassigned, phases);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            BookingEngine.unlockAll(held);
+        }
+    }
+
+    private static long endPhase(Map<String, Long> phases, String name, long start) {
+        long now = System.nanoTime();
+        phases.put(name, now - start);
+        return now;
+    }
+
+    // Doctors that could take over the removed doctors' appointments, read before any locks are held
+    private static Set<Integer> findTargets(Set<Integer> requested) throws SQLException {
+        Set<Integer> targets = new TreeSet<>();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            for (List<Integer> ids : loadCandidates(conn, readDoctors(conn, requested, false)).values()) {
+                targets.addAll(ids);
+            }
+        }
+        return targets;
+    }
+
+    // The specialization of each doctor that exists; with forUpdate, their rows stay locked for the transaction
+    private static Map<Integer, String> readDoctors(Connection conn, Set<Integer> doctorIds, boolean forUpdate) throws SQLException {
+        Map<Integer, String> specializations = new HashMap<>();
+        for (List<Integer> chunk : chunks(doctorIds)) {
+            String sql = "SELECT doctor_id, specialization FROM doctors WHERE doctor_id IN " + placeholders(chunk.size())
+                    + (forUpdate ? " FOR UPDATE" : "");
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                bindIds(pstmt, 1, chunk);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        specializations.put(rs.getInt("doctor_id"), rs.getString("specialization"));
+                    }
+                }
+            }
+        }
+        return specializations;
+    }
+
+    // Remaining doctors of each affected specialization, lowest ID first
+    private static Map<String, List<Integer>> loadCandidates(Connection conn, Map<Integer, String> removed) throws SQLException {
+        Map<String, List<Integer>> candidates = new HashMap<>();
+        String sql = "SELECT doctor_id FROM doctors WHERE specialization = ? ORDER BY doctor_id";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (String specialization : new TreeSet<>(removed.values())) {
+                pstmt.setString(1, specialization);
+                List<Integer> ids = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int doctorId = rs.getInt(1);
+                        if (!removed.containsKey(doctorId)) {
+                            ids.add(doctorId);
+                        }
+                    }
+                }
+                candidates.put(specialization, ids);
+            }
+        }
+        return candidates;
+    }
+
+    private static final class FutureAppointment {
+        final int appointmentId;
+        final int doctorId;
+        final LocalDate date;
+        // -1 for appointments booked before slots existed
+        final int slot;
+
+        FutureAppointment(int appointmentId, int doctorId, LocalDate date, int slot) {
+            this.appointmentId = appointmentId;
+            this.doctorId = doctorId;
+            this.date = date;
+            this.slot = slot;
+        }
+    }
+
+    // One candidate doctor's day as it stands with the moves made so far
+    private static final class Day {
+        final BitSet used;
+        int booked;
+
+        Day(BitSet used, int booked) {
+            this.used = used;
+            this.booked = booked;
+        }
+    }
+
+    private static int reassign(Connection conn, BookingEngine engine, Map<Integer, String> specializations,
+                                Map<String, List<Integer>> candidates, LocalDate today) throws SQLException {
+        List<FutureAppointment> future = new ArrayList<>();
+        for (List<Integer> chunk : chunks(specializations.keySet())) {
+            String sql = "SELECT appointment_id, doctor_id, appointment_date, slot_index FROM appointments " +
+                    "WHERE doctor_id IN " + placeholders(chunk.size()) + " AND appointment_date >= ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = bindIds(pstmt, 1, chunk);
+                pstmt.setDate(index, java.sql.Date.valueOf(today));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int slot = rs.getInt("slot_index");
+                        future.add(new FutureAppointment(rs.getInt("appointment_id"), rs.getInt("doctor_id"),
+                                rs.getDate("appointment_date").toLocalDate(), rs.wasNull() ? -1 : slot));
+                    }
+                }
+            }
+        }
+
+        Map<String, Day> days = new HashMap<>();
+        int moved = 0;
+        try (PreparedStatement taken = conn.prepareStatement(BookingEngine.TAKEN_SLOTS_SQL);
+             PreparedStatement update = conn.prepareStatement("UPDATE appointments SET doctor_id = ? WHERE appointment_id = ?")) {
+            for (FutureAppointment appointment : future) {
+                int target = -1;
+                Day targetDay = null;
+                for (int candidate : candidates.get(specializations.get(appointment.doctorId))) {
+                    String key = candidate + "@" + appointment.date;
+                    Day day = days.get(key);
+                    if (day == null) {
+                        BitSet used = new BitSet(engine.getSlotsPerDay());
+                        int booked = engine.readTakenSlots(taken, candidate, appointment.date, used);
+                        day = new Day(used, booked);
+                        days.put(key, day);
+                    }
+                    if (day.booked >= engine.getDailyCapacity(candidate)
+                            || (appointment.slot >= 0 && day.used.get(appointment.slot))) {
+                        continue;
+                    }
+                    // Spread the moved appointments over the least busy doctors
+                    if (targetDay == null || day.booked < targetDay.booked) {
+                        target = candidate;
+                        targetDay = day;
+                    }
+                }
+                if (targetDay == null) {
+                    continue;
+                }
+                if (appointment.slot >= 0) {
+                    targetDay.used.set(appointment.slot);
+                }
+                targetDay.booked++;
+                update.setInt(1, target);
+                update.setInt(2, appointment.appointmentId);
+                update.addBatch();
+                moved++;
+            }
+            if (moved > 0) {
+                update.executeBatch();
+            }
+        }
+        return moved;
+    }
+
+    private static int deleteIn(Connection conn, String sqlPrefix, Set<Integer> ids) throws SQLException {
+        int deleted = 0;
+        for (List<Integer> chunk : chunks(ids)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlPrefix + placeholders(chunk.size()))) {
+                bindIds(pstmt, 1, chunk);
+                deleted += pstmt.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    private static List<List<Integer>> chunks(Collection<Integer> ids) {
+        List<Integer> all = new ArrayList<>(ids);
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += IN_CHUNK) {
+            chunks.add(all.subList(i, Math.min(all.size(), i + IN_CHUNK)));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 2 + 1).append('(');
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    private static int bindIds(PreparedStatement pstmt, int index, List<Integer> ids) throws SQLException {
+        for (int id : ids) {
+            pstmt.setInt(index++, id);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,155 @@
+package healthcare;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process cache of entities keyed by their integer ID.
+ *
+ * Entries expire after a fixed time to live and the least recently used entry is
+ * evicted once the cache is full. Writers must call {@link #invalidate(int)} for
+ * any ID they change. Readers take a {@link #loadStamp()} before going to the
+ * database so a row read just before an invalidation is not cached afterwards.
+ */
+class EntityCache<V> {
+
+    /** Point-in-time view of the cache counters. */
+    static final class Stats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+
+        Stats(int size, long hits, long misses, long evictions, long expirations, long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public int getSize() { return size; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d, hits=%d, misses=%d, hitRatio=%.1f%%, evictions=%d, expirations=%d, invalidations=%d",
+                    size, hits, misses, getHitRatio() * 100, evictions, expirations, invalidations);
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtNanos;
+
+        Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Integer, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    // Bumped on every invalidation, guarded by entries
+    private long generation;
+
+    EntityCache(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** Returns the cached value, or null if it is missing or has expired. */
+    public V get(int id) {
+        if (maxEntries == 0) {
+            misses.increment();
+            return null;
+        }
+        synchronized (entries) {
+            Entry<V> entry = entries.get(id);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAtNanos >= 0) {
+                entries.remove(id);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /** Call before loading a missing value; pass the result to {@link #put(int, Object, long)}. */
+    public long loadStamp() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /** Caches a loaded value unless something was invalidated while it was being loaded. */
+    public void put(int id, V value, long stamp) {
+        if (maxEntries == 0 || value == null) {
+            return;
+        }
+        synchronized (entries) {
+            if (stamp != generation) {
+                return;
+            }
+            entries.put(id, new Entry<>(value, System.nanoTime() + ttlNanos));
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidate(int id) {
+        synchronized (entries) {
+            generation++;
+            if (entries.remove(id) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum());
+    }
+}
@@ -0,0 +1,1146 @@
+package healthcare;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+// Base of the field validation failures; carries which field was rejected and why
+class ValidationException extends Exception {
+    private final Validation.FieldError error;
+
+    ValidationException(Validation.FieldError error) {
+        super(error.getMessage());
+        this.error = error;
+    }
+
+    public Validation.FieldError getError() {
+        return error;
+    }
+}
+
+class InvalidContactNumberException extends ValidationException {
+    InvalidContactNumberException(Validation.FieldError error) {
+        super(error);
+    }
+}
+
+class InvalidDateFormatException extends ValidationException {
+    InvalidDateFormatException(Validation.FieldError error) {
+        super(error);
+    }
+}
+
+class SlotUnavailableException extends Exception {
+    public SlotUnavailableException(String message) {
+        super(message);
+    }
+}
+
+abstract class Person {
+    private String name;
+    private String contactNumber;
+
+    public Person(String name, String contactNumber) throws InvalidContactNumberException {
+        this.name = name;
+        setContactNumber(contactNumber);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContactNumber() {
+        return contactNumber;
+    }
+
+    protected void setContactNumber(String contactNumber) throws InvalidContactNumberException {
+        Validation.requireContactNumber(Validation.CONTACT_NUMBER, contactNumber);
+        this.contactNumber = contactNumber;
+    }
+
+    public abstract void displayDetails();
+}
+
+class Patient extends Person {
+    private int patientID;
+    private int age;
+    private String gender;
+    private List<String> medicalHistory;
+    // Set for patients read from the database; the history is only fetched when first needed
+    private IntFunction<List<String>> historyLoader;
+
+    public Patient(int patientID, String name, int age, String gender, String contactNumber) throws InvalidContactNumberException {
+        super(name, contactNumber);
+        this.patientID = patientID;
+        this.age = age;
+        this.gender = gender;
+        this.medicalHistory = new ArrayList<>();
+    }
+
+    public int getPatientID() { return patientID; }
+    public int getAge() { return age; }
+    public String getGender() { return gender; }
+
+    public synchronized String getMedicalHistory() {
+        ensureHistoryLoaded();
+        return String.join("; ", medicalHistory);
+    }
+
+    public synchronized List<String> getMedicalConditions() {
+        ensureHistoryLoaded();
+        return Collections.unmodifiableList(new ArrayList<>(medicalHistory));
+    }
+
+    public synchronized void addMedicalCondition(String condition) {
+        ensureHistoryLoaded();
+        medicalHistory.add(condition);
+    }
+
+    // Splits text in the getMedicalHistory() format back into conditions, without a regex
+    static List<String> splitHistory(String history) {
+        List<String> conditions = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = history.indexOf("; ", start)) >= 0) {
+            conditions.add(history.substring(start, end));
+            start = end + 2;
+        }
+        conditions.add(history.substring(start));
+        return conditions;
+    }
+
+    synchronized void setHistoryLoader(IntFunction<List<String>> historyLoader) {
+        this.historyLoader = historyLoader;
+    }
+
+    private void ensureHistoryLoaded() {
+        if (historyLoader == null) {
+            return;
+        }
+        List<String> stored = historyLoader.apply(patientID);
+        if (stored != null) {
+            // A failed load returns null and is retried on the next access
+            historyLoader = null;
+            medicalHistory.addAll(0, stored);
+        }
+    }
+
+    public void displayDetails() {
+        System.out.println("--- Patient Details ---");
+        System.out.println("Patient ID: " + patientID);
+        System.out.println("Name: " + getName());
+        System.out.println("Age: " + age);
+        System.out.println("Gender: " + gender);
+        System.out.println("Contact: " + getContactNumber());
+        System.out.println("Medical History: " + getMedicalHistory());
+    }
+}
+
+class MedicalConditionEntry {
+    private long entryID;
+    private int patientID;
+    private String condition;
+    private Timestamp recordedAt;
+
+    public MedicalConditionEntry(long entryID, int patientID, String condition, Timestamp recordedAt) {
+        this.entryID = entryID;
+        this.patientID = patientID;
+        this.condition = condition;
+        this.recordedAt = recordedAt;
+    }
+
+    public long getEntryID() { return entryID; }
+    public int getPatientID() { return patientID; }
+    public String getCondition() { return condition; }
+    public Timestamp getRecordedAt() { return recordedAt; }
+}
+
+class Doctor extends Person {
+    private int doctorID;
+    private String specialization;
+
+    public Doctor(int doctorID, String name, String specialization, String contactNumber) throws InvalidContactNumberException {
+        super(name, contactNumber);
+        this.doctorID = doctorID;
+        this.specialization = specialization;
+    }
+
+    public int getDoctorID() { return doctorID; }
+    public String getSpecialization() { return specialization; }
+
+    public void displayDetails() {
+        System.out.println("--- Doctor Details ---");
+        System.out.println("Doctor ID: " + doctorID);
+        System.out.println("Name: " + getName());
+        System.out.println("Specialization: " + specialization);
+        System.out.println("Contact: " + getContactNumber());
+    }
+}
+
+class Appointment {
+    private int appointmentID;
+    private Patient patient;
+    private Doctor doctor;
+    private LocalDate appointmentDate;
+    private int slotIndex = -1;
+    private LocalTime startTime;
+
+    public Appointment(int appointmentID, Patient patient, Doctor doctor, String appointmentDate) throws InvalidDateFormatException {
+        this(appointmentID, patient, doctor, Validation.parseDate(Validation.APPOINTMENT_DATE, appointmentDate));
+    }
+
+    public Appointment(int appointmentID, Patient patient, Doctor doctor, LocalDate appointmentDate) {
+        if (appointmentDate == null) {
+            throw new IllegalArgumentException("Appointment date is required");
+        }
+        this.appointmentID = appointmentID;
+        this.patient = patient;
+        this.doctor = doctor;
+        this.appointmentDate = appointmentDate;
+    }
+    
+    public int getAppointmentID() { return appointmentID; }
+    public Patient getPatient() { return patient; }
+    public Doctor getDoctor() { return doctor; }
+    public LocalDate getAppointmentDate() { return appointmentDate; }
+    public int getSlotIndex() { return slotIndex; }
+    public LocalTime getStartTime() { return startTime; }
+
+    void assignSlot(int slotIndex, LocalTime startTime) {
+        this.slotIndex = slotIndex;
+        this.startTime = startTime;
+    }
+
+    public void displayDetails() {
+        System.out.println("--- Appointment Details ---");
+        System.out.println("Appointment ID: " + appointmentID);
+        System.out.println("Patient: " + patient.getName());
+        System.out.println("Doctor: " + doctor.getName());
+        System.out.println("Date: " + appointmentDate);
+        if (startTime != null) {
+            System.out.println("Time: " + startTime);
+        }
+    }
+}
+
+class DatabaseManager {
+    private static final String DB_URL = System.getProperty("healthcare.db.url", "jdbc:mysql://localhost:3306/healthcare");
+    private static final String DB_USER = System.getProperty("healthcare.db.user", "root");
+    private static final String DB_PASSWORD = System.getProperty("healthcare.db.password", "#Dilna@2007"); // Using password from your second file
+    private static final int POOL_SIZE = Integer.getInteger("healthcare.db.pool.size", 10);
+    private static final long POOL_TIMEOUT_MILLIS = Long.getLong("healthcare.db.pool.timeoutMillis", 30000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("healthcare.db.statementCache.size", 32);
+
+    private static final int CACHE_MAX_ENTRIES = Integer.getInteger("healthcare.cache.maxEntries", 10000);
+    private static final long CACHE_TTL_SECONDS = Long.getLong("healthcare.cache.ttlSeconds", 300L);
+    private static final long APPLY_TIMEOUT_MILLIS = Long.getLong("healthcare.writeBehind.applyTimeoutMillis", 30000L);
+
+    private static final ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, POOL_SIZE,
+            POOL_TIMEOUT_MILLIS, STATEMENT_CACHE_SIZE);
+
+    // Read-through caches for the ID lookups; every write path below invalidates the IDs it touches
+    // once the write is done, so a lookup racing with the write cannot re-cache the old row
+    private static final EntityCache<Patient> patientCache = new EntityCache<>(CACHE_MAX_ENTRIES, CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+    private static final EntityCache<Doctor> doctorCache = new EntityCache<>(CACHE_MAX_ENTRIES, CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+    private static final SearchIndex searchIndex = new SearchIndex();
+    private static final Reports reports = new Reports();
+    // Set by initDatabase when healthcare.writeBehind.enabled is true; the insert paths below then queue their writes
+    private static volatile WriteBehind writeBehind;
+
+    // Calls, errors by SQLState and latency of each public operation below; exported by Metrics
+    private static final Metrics.Operation INIT_DATABASE = Metrics.operation("db.initDatabase");
+    private static final Metrics.Operation REBUILD_SEARCH_INDEX = Metrics.operation("db.rebuildSearchIndex");
+    private static final Metrics.Operation INSERT_PATIENT = Metrics.operation("db.insertPatient");
+    private static final Metrics.Operation INSERT_DOCTOR = Metrics.operation("db.insertDoctor");
+    private static final Metrics.Operation CREATE_APPOINTMENT = Metrics.operation("db.createAppointment");
+    private static final Metrics.Operation ADD_MEDICAL_CONDITION = Metrics.operation("db.addMedicalCondition");
+    private static final Metrics.Operation GET_MEDICAL_HISTORY_PAGE = Metrics.operation("db.getMedicalHistoryPage");
+    private static final Metrics.Operation LOAD_MEDICAL_HISTORY = Metrics.operation("db.loadMedicalHistory");
+    private static final Metrics.Operation GET_PATIENT = Metrics.operation("db.getPatientById");
+    private static final Metrics.Operation GET_DOCTOR = Metrics.operation("db.getDoctorById");
+    private static final Metrics.Operation DELETE_DOCTORS = Metrics.operation("db.deleteDoctors");
+
+    // Connections come from the pool; closing them returns them for reuse
+    public static Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    public static StatementCache.Stats getStatementCacheStats() {
+        return pool.getStatementCacheStats();
+    }
+
+    static final String INSERT_PATIENT_SQL = "INSERT INTO patients (patient_id, name, age, gender, contact_number) VALUES (?, ?, ?, ?, ?)";
+    static final String INSERT_CONDITION_SQL = "INSERT INTO medical_conditions (patient_id, condition_text) VALUES (?, ?)";
+    static final String INSERT_DOCTOR_SQL = "INSERT INTO doctors (doctor_id, name, specialization, contact_number) VALUES (?, ?, ?, ?)";
+    static final String INSERT_APPOINTMENT_SQL = "INSERT INTO appointments (appointment_id, patient_id, doctor_id, appointment_date) VALUES (?, ?, ?, ?)";
+
+    public static EntityCache.Stats getPatientCacheStats() {
+        return patientCache.getStats();
+    }
+
+    public static EntityCache.Stats getDoctorCacheStats() {
+        return doctorCache.getStats();
+    }
+
+    public static SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    static Reports getReports() {
+        return reports;
+    }
+
+    /** The write-behind pipeline, or null when writes go straight to the database. */
+    static WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public static void shutdown() {
+        // Drains queued writes into the database while the pool is still open
+        WriteBehind pending = writeBehind;
+        if (pending != null) {
+            writeBehind = null;
+            pending.close();
+        }
+        pool.close();
+    }
+
+    // Method to create or update tables if they don't exist
+    public static void initDatabase() {
+        long start = System.nanoTime();
+        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
+            // Creating patients table
+            String createPatientsTable = "CREATE TABLE IF NOT EXISTS patients (" +
+                    "patient_id INT PRIMARY KEY," +
+                    "name VARCHAR(100) NOT NULL," +
+                    "age INT NOT NULL," +
+                    "gender VARCHAR(10) NOT NULL," +
+                    "contact_number VARCHAR(10) NOT NULL," +
+                    "medical_history TEXT)";
+            stmt.executeUpdate(createPatientsTable);
+            // Name search and the sorted patient list page through these
+            createIndexIfMissing(conn, "patients", "idx_patients_name", "name, patient_id");
+            createIndexIfMissing(conn, "patients", "idx_patients_age", "age, patient_id");
+            
+            // Creating doctors table
+            String createDoctorsTable = "CREATE TABLE IF NOT EXISTS doctors (" +
+                    "doctor_id INT PRIMARY KEY," +
+                    "name VARCHAR(100) NOT NULL," +
+                    "specialization VARCHAR(100) NOT NULL," +
+                    "contact_number VARCHAR(10) NOT NULL)";
+            stmt.executeUpdate(createDoctorsTable);
+            
+            // Creating appointments table
+            String createAppointmentsTable = "CREATE TABLE IF NOT EXISTS appointments (" +
+                    "appointment_id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "patient_id INT NOT NULL," +
+                    "doctor_id INT NOT NULL," +
+                    "appointment_date DATE NOT NULL," +
+                    "slot_index INT," +
+                    "FOREIGN KEY (patient_id) REFERENCES patients(patient_id)," +
+                    "FOREIGN KEY (doctor_id) REFERENCES doctors(doctor_id))";
+            stmt.executeUpdate(createAppointmentsTable);
+            // Indexes behind the per-doctor day sheets and per-patient listings in AppointmentQueries
+            createIndexIfMissing(conn, "appointments", "idx_appointments_doctor_date", "doctor_id, appointment_date, appointment_id");
+            createIndexIfMissing(conn, "appointments", "idx_appointments_patient_date", "patient_id, appointment_date, appointment_id");
+            upgradeAppointmentsForBooking(conn);
+
+            // Creating medical conditions table, one row per condition; replaces patients.medical_history
+            String createConditionsTable = "CREATE TABLE IF NOT EXISTS medical_conditions (" +
+                    "entry_id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+                    "patient_id INT NOT NULL," +
+                    "condition_text TEXT NOT NULL," +
+                    "recorded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                    "FOREIGN KEY (patient_id) REFERENCES patients(patient_id))";
+            stmt.executeUpdate(createConditionsTable);
+            createIndexIfMissing(conn, "medical_conditions", "idx_conditions_patient", "patient_id, entry_id");
+            // Tables created when condition_text was VARCHAR(255) could not take every legacy medical_history entry
+            if (columnSize(conn, "medical_conditions", "condition_text") <= 255) {
+                stmt.executeUpdate("ALTER TABLE medical_conditions MODIFY condition_text TEXT NOT NULL");
+            }
+
+            migrateMedicalHistory(conn);
+
+            System.out.println("Database initialized successfully.");
+        } catch (SQLException e) {
+            INIT_DATABASE.failed(e);
+            Log.error("init_database_failed", "Error initializing database", e);
+            return;
+        } finally {
+            INIT_DATABASE.finish(start);
+        }
+        rebuildSearchIndex();
+        startWriteBehind();
+    }
+
+    private static synchronized void startWriteBehind() {
+        if (writeBehind != null || !WriteBehind.isEnabled()) {
+            return;
+        }
+        WriteBehind pipeline = WriteBehind.fromSystemProperties();
+        try {
+            pipeline.start();
+            writeBehind = pipeline;
+            System.out.println("Write-behind enabled.");
+        } catch (SQLException | IOException e) {
+            Log.error("write_behind_start_failed", "Error starting write-behind, writing synchronously", e);
+        }
+    }
+
+    // Also used after bulk imports, which write rows without going through the hooks below
+    public static void rebuildSearchIndex() {
+        long start = System.nanoTime();
+        try {
+            searchIndex.rebuild();
+        } catch (SQLException e) {
+            REBUILD_SEARCH_INDEX.failed(e);
+            Log.error("search_index_rebuild_failed", "Error building search index", e);
+        } finally {
+            REBUILD_SEARCH_INDEX.finish(start);
+        }
+    }
+
+    static void createIndexIfMissing(Connection conn, String table, String index, String columns) throws SQLException {
+        createIndexIfMissing(conn, table, index, columns, false);
+    }
+
+    static void createIndexIfMissing(Connection conn, String table, String index, String columns, boolean unique) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        // Identifier case differs between servers, so check the name as given and in both cases
+        for (String name : new String[] { table, table.toUpperCase(), table.toLowerCase() }) {
+            try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return;
+                    }
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    // Returns the column's IS_AUTOINCREMENT metadata ("YES"/"NO"), or null if the column does not exist
+    private static String describeColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String name : new String[] { table, table.toUpperCase(), table.toLowerCase() }) {
+            try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        String autoIncrement = rs.getString("IS_AUTOINCREMENT");
+                        return autoIncrement == null ? "" : autoIncrement;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // COLUMN_SIZE from the driver's metadata, or Integer.MAX_VALUE if the column is not found
+    private static int columnSize(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String name : new String[] { table, table.toUpperCase(), table.toLowerCase() }) {
+            try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return rs.getInt("COLUMN_SIZE");
+                    }
+                }
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // Brings appointments tables created before slot booking up to date: server-side IDs,
+    // a slot column, and one booking per doctor, day and slot
+    private static void upgradeAppointmentsForBooking(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if ("NO".equalsIgnoreCase(describeColumn(conn, "appointments", "appointment_id"))) {
+                stmt.executeUpdate("ALTER TABLE appointments MODIFY appointment_id INT NOT NULL AUTO_INCREMENT");
+            }
+            if (describeColumn(conn, "appointments", "slot_index") == null) {
+                stmt.executeUpdate("ALTER TABLE appointments ADD COLUMN slot_index INT");
+            }
+        }
+        // Rows without a slot (NULL) are not constrained
+        createIndexIfMissing(conn, "appointments", "uq_appointments_doctor_slot", "doctor_id, appointment_date, slot_index", true);
+    }
+
+    // Moves conditions out of the old "; "-joined medical_history column, a chunk of patients at a time.
+    // Migrated rows have the column cleared, so an interrupted run simply continues next time.
+    private static void migrateMedicalHistory(Connection conn) throws SQLException {
+        String selectLegacySQL = "SELECT patient_id, medical_history FROM patients " +
+                "WHERE patient_id > ? AND medical_history IS NOT NULL AND medical_history <> '' " +
+                "ORDER BY patient_id LIMIT 500";
+        String clearLegacySQL = "UPDATE patients SET medical_history = NULL WHERE patient_id = ?";
+        int lastPatientId = Integer.MIN_VALUE;
+        int migrated = 0;
+        conn.setAutoCommit(false);
+        try (PreparedStatement select = conn.prepareStatement(selectLegacySQL);
+             PreparedStatement insert = conn.prepareStatement(INSERT_CONDITION_SQL);
+             PreparedStatement clear = conn.prepareStatement(clearLegacySQL)) {
+            while (true) {
+                select.setInt(1, lastPatientId);
+                int rows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        int patientId = rs.getInt("patient_id");
+                        for (String condition : Patient.splitHistory(rs.getString("medical_history"))) {
+                            insert.setInt(1, patientId);
+                            insert.setString(2, condition);
+                            insert.addBatch();
+                        }
+                        clear.setInt(1, patientId);
+                        clear.addBatch();
+                        lastPatientId = patientId;
+                        rows++;
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                insert.executeBatch();
+                clear.executeBatch();
+                conn.commit();
+                migrated += rows;
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        if (migrated > 0) {
+            System.out.println("Migrated medical history of " + migrated + " patient(s).");
+        }
+    }
+
+    public static boolean createPatient(Patient patient) {
+        try {
+            insertPatient(patient);
+            System.out.println("Patient record inserted successfully.");
+            return true;
+        } catch (SQLException e) {
+            Log.error("insert_patient_failed", "Error inserting patient", e, "patientId", patient.getPatientID());
+            return false;
+        }
+    }
+
+    // Throwing variants for callers that report errors themselves, such as the HTTP service
+    static void insertPatient(Patient patient) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            WriteBehind pipeline = writeBehind;
+            if (pipeline != null) {
+                awaitApplied(pipeline.submitPatient(patient));
+            } else {
+                insertPatientNow(patient);
+            }
+        } catch (SQLException e) {
+            INSERT_PATIENT.failed(e);
+            throw e;
+        } finally {
+            INSERT_PATIENT.finish(start);
+        }
+    }
+
+    private static void insertPatientNow(Patient patient) throws SQLException {
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(INSERT_PATIENT_SQL)) {
+            List<String> conditions = patient.getMedicalConditions();
+            conn.setAutoCommit(false);
+            bindPatient(pstmt, patient);
+            pstmt.executeUpdate();
+            if (!conditions.isEmpty()) {
+                try (PreparedStatement conditionStmt = conn.prepareStatement(INSERT_CONDITION_SQL)) {
+                    bindConditions(conditionStmt, patient.getPatientID(), conditions);
+                    conditionStmt.executeBatch();
+                }
+            }
+            conn.commit();
+            patientWritten(patient.getPatientID(), patient.getName(), conditions);
+        } finally {
+            patientCache.invalidate(patient.getPatientID());
+        }
+    }
+
+    public static boolean createDoctor(Doctor doctor) {
+        try {
+            insertDoctor(doctor);
+            System.out.println("Doctor record inserted successfully.");
+            return true;
+        } catch (SQLException e) {
+            Log.error("insert_doctor_failed", "Error inserting doctor", e, "doctorId", doctor.getDoctorID());
+            return false;
+        }
+    }
+
+    static void insertDoctor(Doctor doctor) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(INSERT_DOCTOR_SQL)) {
+            bindDoctor(pstmt, doctor);
+            pstmt.executeUpdate();
+            searchIndex.doctorSaved(doctor.getDoctorID(), doctor.getName(), doctor.getSpecialization());
+        } catch (SQLException e) {
+            INSERT_DOCTOR.failed(e);
+            throw e;
+        } finally {
+            doctorCache.invalidate(doctor.getDoctorID());
+            INSERT_DOCTOR.finish(start);
+        }
+    }
+
+    public static void createAppointment(Appointment appointment) {
+        long start = System.nanoTime();
+        try {
+            insertAppointmentNow(appointment);
+            System.out.println("Appointment record inserted successfully.");
+        } catch (SQLException e) {
+            CREATE_APPOINTMENT.failed(e);
+            Log.error("insert_appointment_failed", "Error inserting appointment", e,
+                    "appointmentId", appointment.getAppointmentID());
+        } finally {
+            CREATE_APPOINTMENT.finish(start);
+        }
+    }
+
+    private static void insertAppointmentNow(Appointment appointment) throws SQLException {
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(INSERT_APPOINTMENT_SQL)) {
+            pstmt.setInt(1, appointment.getAppointmentID());
+            pstmt.setInt(2, appointment.getPatient().getPatientID());
+            pstmt.setInt(3, appointment.getDoctor().getDoctorID());
+            pstmt.setDate(4, java.sql.Date.valueOf(appointment.getAppointmentDate()));
+            pstmt.executeUpdate();
+            reports.appointmentInserted(appointment.getAppointmentID());
+        }
+    }
+
+    // Parameter binding for the insert statements, shared with BulkLoader
+    static void bindPatient(PreparedStatement pstmt, Patient patient) throws SQLException {
+        pstmt.setInt(1, patient.getPatientID());
+        pstmt.setString(2, patient.getName());
+        pstmt.setInt(3, patient.getAge());
+        pstmt.setString(4, patient.getGender());
+        pstmt.setString(5, patient.getContactNumber());
+    }
+
+    // Adds one batch entry per condition; the caller runs executeBatch
+    static void bindConditions(PreparedStatement pstmt, int patientId, List<String> conditions) throws SQLException {
+        for (String condition : conditions) {
+            pstmt.setInt(1, patientId);
+            pstmt.setString(2, condition);
+            pstmt.addBatch();
+        }
+    }
+
+    static void bindDoctor(PreparedStatement pstmt, Doctor doctor) throws SQLException {
+        pstmt.setInt(1, doctor.getDoctorID());
+        pstmt.setString(2, doctor.getName());
+        pstmt.setString(3, doctor.getSpecialization());
+        pstmt.setString(4, doctor.getContactNumber());
+    }
+
+    // Appends one condition; earlier entries are never read or rewritten
+    public static boolean addMedicalCondition(int patientId, String condition) {
+        long start = System.nanoTime();
+        try {
+            WriteBehind pipeline = writeBehind;
+            if (pipeline != null) {
+                awaitDurable(pipeline.submitCondition(patientId, condition));
+            } else {
+                insertConditionNow(patientId, condition);
+            }
+            return true;
+        } catch (SQLException e) {
+            ADD_MEDICAL_CONDITION.failed(e);
+            Log.error("add_condition_failed", "Error adding medical condition", e, "patientId", patientId);
+            return false;
+        } finally {
+            ADD_MEDICAL_CONDITION.finish(start);
+        }
+    }
+
+    private static void insertConditionNow(int patientId, String condition) throws SQLException {
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(INSERT_CONDITION_SQL)) {
+            pstmt.setInt(1, patientId);
+            pstmt.setString(2, condition);
+            pstmt.executeUpdate();
+            conditionWritten(patientId, condition);
+        } finally {
+            patientCache.invalidate(patientId);
+        }
+    }
+
+    // Run once a write is committed, by the insert paths above or by the write-behind applier
+    static void patientWritten(int patientId, String name, List<String> conditions) {
+        searchIndex.patientSaved(patientId, name, conditions);
+        reports.patientInserted(patientId);
+        patientCache.invalidate(patientId);
+    }
+
+    static void conditionWritten(int patientId, String condition) {
+        searchIndex.conditionAdded(patientId, condition);
+        patientCache.invalidate(patientId);
+    }
+
+    // With write-behind on, a condition counts as done once it is in the journal; it reaches the tables shortly
+    // after. Its patient already exists, so the database has no reason to refuse it.
+    private static void awaitDurable(WriteBehind.Ticket ticket) throws SQLException {
+        try {
+            ticket.durable().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Write-behind journal failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    // A new patient's ID comes from the caller and may be taken, so patient inserts wait until the row is in the
+    // database and a duplicate is reported like any other failed insert
+    private static void awaitApplied(WriteBehind.Ticket ticket) throws SQLException {
+        awaitDurable(ticket);
+        try {
+            ticket.applied().get(APPLY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Write-behind apply failed: " + cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new SQLTransientException("Write is journaled but not yet in the database after "
+                    + APPLY_TIMEOUT_MILLIS + " ms; it will be applied once the database catches up");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException("Interrupted while waiting for the write to be applied", e);
+        }
+    }
+
+    // One page of a patient's history in the order it was recorded; pass the last entry ID to get the next page
+    public static List<MedicalConditionEntry> getMedicalHistoryPage(int patientId, long afterEntryId, int limit) {
+        String selectPageSQL = "SELECT entry_id, condition_text, recorded_at FROM medical_conditions " +
+                "WHERE patient_id = ? AND entry_id > ? ORDER BY entry_id LIMIT ?";
+        List<MedicalConditionEntry> page = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(selectPageSQL)) {
+            pstmt.setInt(1, patientId);
+            pstmt.setLong(2, afterEntryId);
+            pstmt.setInt(3, limit);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                page.add(new MedicalConditionEntry(rs.getLong("entry_id"), patientId,
+                        rs.getString("condition_text"), rs.getTimestamp("recorded_at")));
+            }
+        } catch (SQLException e) {
+            GET_MEDICAL_HISTORY_PAGE.failed(e);
+            Log.error("medical_history_failed", "Error retrieving medical history", e, "patientId", patientId);
+        } finally {
+            GET_MEDICAL_HISTORY_PAGE.finish(start);
+        }
+        return page;
+    }
+
+    // Loader behind Patient's lazy history; null tells the patient to try again later
+    private static List<String> loadMedicalHistory(int patientId) {
+        String selectHistorySQL = "SELECT condition_text FROM medical_conditions WHERE patient_id = ? ORDER BY entry_id";
+        long start = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(selectHistorySQL)) {
+            pstmt.setInt(1, patientId);
+            ResultSet rs = pstmt.executeQuery();
+            List<String> conditions = new ArrayList<>();
+            while (rs.next()) {
+                conditions.add(rs.getString("condition_text"));
+            }
+            return conditions;
+        } catch (SQLException e) {
+            LOAD_MEDICAL_HISTORY.failed(e);
+            Log.error("medical_history_failed", "Error retrieving medical history", e, "patientId", patientId);
+            return null;
+        } finally {
+            LOAD_MEDICAL_HISTORY.finish(start);
+        }
+    }
+
+    public static Patient getPatientById(int patientId) {
+        long start = System.nanoTime();
+        try {
+            Patient cached = patientCache.get(patientId);
+            if (cached != null) {
+                return cached;
+            }
+            long stamp = patientCache.loadStamp();
+            Patient patient = loadPatientById(patientId);
+            patientCache.put(patientId, patient, stamp);
+            return patient;
+        } finally {
+            GET_PATIENT.finish(start);
+        }
+    }
+
+    private static Patient loadPatientById(int patientId) {
+        String selectPatientSQL = "SELECT name, age, gender, contact_number FROM patients WHERE patient_id = ?";
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(selectPatientSQL)) {
+            pstmt.setInt(1, patientId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                String name = rs.getString("name");
+                int age = rs.getInt("age");
+                String gender = rs.getString("gender");
+                String contactNumber = rs.getString("contact_number");
+                
+                Patient patient = new Patient(patientId, name, age, gender, contactNumber);
+                patient.setHistoryLoader(DatabaseManager::loadMedicalHistory);
+                return patient;
+            }
+        } catch (SQLException | InvalidContactNumberException e) {
+            GET_PATIENT.failed(e);
+            Log.error("get_patient_failed", "Error retrieving patient", e, "patientId", patientId);
+        }
+        return null;
+    }
+
+    public static Doctor getDoctorById(int doctorId) {
+        long start = System.nanoTime();
+        try {
+            Doctor cached = doctorCache.get(doctorId);
+            if (cached != null) {
+                return cached;
+            }
+            long stamp = doctorCache.loadStamp();
+            Doctor doctor = loadDoctorById(doctorId);
+            doctorCache.put(doctorId, doctor, stamp);
+            return doctor;
+        } finally {
+            GET_DOCTOR.finish(start);
+        }
+    }
+
+    private static Doctor loadDoctorById(int doctorId) {
+        String selectDoctorSQL = "SELECT * FROM doctors WHERE doctor_id = ?";
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(selectDoctorSQL)) {
+            pstmt.setInt(1, doctorId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                String name = rs.getString("name");
+                String specialization = rs.getString("specialization");
+                String contactNumber = rs.getString("contact_number");
+                
+                return new Doctor(doctorId, name, specialization, contactNumber);
+            }
+        } catch (SQLException | InvalidContactNumberException e) {
+            GET_DOCTOR.failed(e);
+            Log.error("get_doctor_failed", "Error retrieving doctor", e, "doctorId", doctorId);
+        }
+        return null;
+    }
+
+    // Returns the number of doctors deleted, or -1 if the delete failed
+    public static int deleteDoctor(int doctorId) {
+        try {
+            DoctorRemoval.Report report = deleteDoctors(Collections.singletonList(doctorId), null);
+            System.out.println(report.getDoctorsDeleted() + " doctor record(s) deleted successfully.");
+            return report.getDoctorsDeleted();
+        } catch (SQLException e) {
+            Log.error("delete_doctor_failed", "Error deleting doctor", e, "doctorId", doctorId);
+            return -1;
+        }
+    }
+
+    /**
+     * Deletes the doctors and their appointments in one transaction. With a booking
+     * engine, future appointments move to another doctor of the same specialization
+     * where a slot allows; pass null to delete them.
+     */
+    public static DoctorRemoval.Report deleteDoctors(Collection<Integer> doctorIds, BookingEngine reassignWith) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            DoctorRemoval.Report report = DoctorRemoval.removeDoctors(doctorIds, reassignWith, LocalDate.now());
+            for (int doctorId : doctorIds) {
+                searchIndex.doctorDeleted(doctorId);
+            }
+            // Reassigned appointments keep their IDs, which an incremental refresh cannot see
+            reports.invalidate();
+            return report;
+        } catch (SQLException e) {
+            DELETE_DOCTORS.failed(e);
+            throw e;
+        } finally {
+            for (int doctorId : doctorIds) {
+                doctorCache.invalidate(doctorId);
+            }
+            DELETE_DOCTORS.finish(start);
+        }
+    }
+}
+
+public class Healthcare {
+    private static final BookingEngine bookingEngine = BookingEngine.fromSystemProperties();
+
+    // Menu choices 1-8 are counted rather than timed, as most of their time is spent waiting on input
+    private static final Metrics.Operation[] MENU_OPERATIONS = {
+            Metrics.operation("menu.addPatient"),
+            Metrics.operation("menu.addDoctor"),
+            Metrics.operation("menu.scheduleAppointment"),
+            Metrics.operation("menu.addMedicalCondition"),
+            Metrics.operation("menu.displayPatient"),
+            Metrics.operation("menu.displayDoctor"),
+            Metrics.operation("menu.deleteDoctor"),
+            Metrics.operation("menu.search")
+    };
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            runCommand(args);
+            return;
+        }
+
+        Scanner scanner = new Scanner(System.in);
+        int choice;
+        Metrics.startExporterIfConfigured();
+        
+        try {
+            // Initialize database tables if they don't exist
+            DatabaseManager.initDatabase();
+        } catch (Exception e) {
+            System.out.println("Error initializing database: " + e.getMessage());
+        }
+        
+        do {
+            System.out.println("\n--- Healthcare Management System ---");
+            System.out.println("1. Add Patient");
+            System.out.println("2. Add Doctor");
+            System.out.println("3. Schedule Appointment");
+            System.out.println("4. Add Medical Condition to Patient");
+            System.out.println("5. Display Patient Details");
+            System.out.println("6. Display Doctor Details");
+            System.out.println("7. Delete Doctor");
+            System.out.println("8. Search Patients and Doctors");
+            System.out.println("9. Exit");
+            System.out.print("Enter your choice: ");
+            choice = scanner.nextInt();
+            scanner.nextLine(); // Consume newline
+            Metrics.Operation menuOperation = choice >= 1 && choice <= MENU_OPERATIONS.length ? MENU_OPERATIONS[choice - 1] : null;
+
+            try {
+                if (menuOperation != null) {
+                    menuOperation.mark();
+                }
+                switch (choice) {
+                    case 1:
+                        System.out.println("\nEnter Patient Details:");
+                        System.out.print("ID: ");
+                        int patientID = scanner.nextInt();
+                        scanner.nextLine();
+                        System.out.print("Name: ");
+                        String patientName = scanner.nextLine();
+                        System.out.print("Age: ");
+                        int patientAge = scanner.nextInt();
+                        scanner.nextLine();
+                        System.out.print("Gender: ");
+                        String patientGender = scanner.nextLine();
+                        System.out.print("Contact Number: ");
+                        String patientContact = scanner.nextLine();
+
+                        Patient patient = new Patient(patientID, patientName, patientAge, patientGender, patientContact);
+                        DatabaseManager.createPatient(patient);
+                        break;
+
+                    case 2:
+                        System.out.println("\nEnter Doctor Details:");
+                        System.out.print("ID: ");
+                        int doctorID = scanner.nextInt();
+                        scanner.nextLine();
+                        System.out.print("Name: ");
+                        String doctorName = scanner.nextLine();
+                        System.out.print("Specialization: ");
+                        String specialization = scanner.nextLine();
+                        System.out.print("Contact Number: ");
+                        String doctorContact = scanner.nextLine();
+
+                        Doctor doctor = new Doctor(doctorID, doctorName, specialization, doctorContact);
+                        DatabaseManager.createDoctor(doctor);
+                        break;
+                        
+                    case 3:
+                        System.out.println("\nEnter Appointment Details:");
+                        System.out.print("Patient ID: ");
+                        int apptPatientID = scanner.nextInt();
+                        scanner.nextLine();
+                        Patient apptPatient = DatabaseManager.getPatientById(apptPatientID);
+                        if (apptPatient == null) {
+                            System.out.println("Patient not found!");
+                            break;
+                        }
+                        
+                        System.out.print("Doctor ID: ");
+                        int apptDoctorID = scanner.nextInt();
+                        scanner.nextLine();
+                        Doctor apptDoctor = DatabaseManager.getDoctorById(apptDoctorID);
+                        if (apptDoctor == null) {
+                            System.out.println("Doctor not found!");
+                            break;
+                        }
+                        
+                        System.out.print("Appointment Date (YYYY-MM-DD): ");
+                        String appointmentDate = scanner.nextLine();
+                        System.out.print("Preferred Time (HH:MM, blank for earliest free slot): ");
+                        String preferredTime = scanner.nextLine().trim();
+                        
+                        Appointment appointment = bookingEngine.book(apptPatient, apptDoctor, appointmentDate,
+                                preferredTime.isEmpty() ? null : LocalTime.parse(preferredTime));
+                        System.out.println("Appointment booked successfully.");
+                        appointment.displayDetails();
+                        break;
+                        
+                    case 4:
+                        System.out.print("\nEnter Patient ID: ");
+                        int medPatientID = scanner.nextInt();
+                        scanner.nextLine();
+                        
+                        Patient medPatient = DatabaseManager.getPatientById(medPatientID);
+                        if (medPatient == null) {
+                            System.out.println("Patient not found!");
+                            break;
+                        }
+                        
+                        System.out.print("Enter medical condition to add: ");
+                        String condition = scanner.nextLine();
+                        
+                        if (DatabaseManager.addMedicalCondition(medPatientID, condition)) {
+                            System.out.println("Medical condition added successfully.");
+                        }
+                        break;
+                        
+                    case 5:
+                        System.out.print("\nEnter Patient ID to display: ");
+                        int dispPatientID = scanner.nextInt();
+                        Patient dispPatient = DatabaseManager.getPatientById(dispPatientID);
+                        if (dispPatient == null) {
+                            System.out.println("Patient not found!");
+                        } else {
+                            dispPatient.displayDetails();
+                        }
+                        break;
+                        
+                    case 6:
+                        System.out.print("\nEnter Doctor ID to display: ");
+                        int dispDoctorID = scanner.nextInt();
+                        Doctor dispDoctor = DatabaseManager.getDoctorById(dispDoctorID);
+                        if (dispDoctor == null) {
+                            System.out.println("Doctor not found!");
+                        } else {
+                            dispDoctor.displayDetails();
+                        }
+                        break;
+
+                    case 7:
+                        System.out.print("\nEnter Doctor ID to delete: ");
+                        int deleteDoctorID = scanner.nextInt();
+                        scanner.nextLine();
+                        System.out.print("Move future appointments to another doctor with the same specialization? (y/n): ");
+                        boolean reassign = scanner.nextLine().trim().equalsIgnoreCase("y");
+                        DoctorRemoval.Report removal = DatabaseManager.deleteDoctors(Collections.singletonList(deleteDoctorID),
+                                reassign ? bookingEngine : null);
+                        System.out.println(removal);
+                        break;
+
+                    case 8:
+                        System.out.println("\nSearch by: 1. Patient name  2. Patient condition  3. Doctor name  4. Specialization");
+                        System.out.print("Choice: ");
+                        int searchBy = scanner.nextInt();
+                        scanner.nextLine();
+                        System.out.print("Search for: ");
+                        String searchText = scanner.nextLine();
+                        SearchIndex index = DatabaseManager.getSearchIndex();
+                        List<SearchIndex.Hit> hits;
+                        switch (searchBy) {
+                            case 1: hits = index.findPatientsByName(searchText, SearchIndex.DEFAULT_LIMIT); break;
+                            case 2: hits = index.findPatientsByCondition(searchText, SearchIndex.DEFAULT_LIMIT); break;
+                            case 3: hits = index.findDoctorsByName(searchText, SearchIndex.DEFAULT_LIMIT); break;
+                            case 4: hits = index.findDoctorsBySpecialization(searchText, SearchIndex.DEFAULT_LIMIT); break;
+                            default:
+                                System.out.println("Invalid choice!");
+                                hits = null;
+                        }
+                        if (hits != null) {
+                            if (hits.isEmpty()) {
+                                System.out.println("No matches found.");
+                            }
+                            for (SearchIndex.Hit hit : hits) {
+                                System.out.println(hit);
+                            }
+                        }
+                        break;
+
+                    case 9:
+                        System.out.println("Exiting the system. Thank you!");
+                        break;
+
+                    default:
+                        System.out.println("Invalid choice! Please try again.");
+                }
+            } catch (Exception e) {
+                if (menuOperation != null) {
+                    menuOperation.failed(e);
+                }
+                Log.error("menu_operation_failed", "Menu choice " + choice + " failed", e, "choice", choice);
+                System.out.println("Error: " + e.getMessage());
+            }
+        } while (choice != 9);
+
+        scanner.close();
+        DatabaseManager.shutdown();
+        Metrics.stopExporter();
+    }
+
+    // Non-interactive mode, e.g. "java Healthcare import patients patients.csv --chunk-size 1000"
+    private static void runCommand(String[] args) {
+        try {
+            Metrics.startExporterIfConfigured();
+            DatabaseManager.initDatabase();
+            switch (args[0]) {
+                case "import":
+                    BulkLoader.runImport(args);
+                    break;
+                case "serve":
+                    HealthcareServer.runServe(args, bookingEngine);
+                    break;
+                case "snapshot":
+                    Snapshot.runSnapshot(args);
+                    break;
+                case "report":
+                    Reports.runReport(args);
+                    break;
+                default:
+                    System.out.println("Unknown command: " + args[0]);
+                    System.out.println("Usage: java Healthcare import <patients|doctors|appointments> <file.csv> [--chunk-size N] [--rejects file]");
+                    System.out.println("       java Healthcare serve [port]");
+                    System.out.println("       java Healthcare snapshot <export|import|verify> <file> [--threads N] [--group-rows N]");
+                    System.out.println("       java Healthcare report [week-start] [--days N] [--top N]");
+            }
+        } catch (Exception e) {
+            Log.error("command_failed", "Command " + args[0] + " failed", e);
+            System.out.println("Error: " + e.getMessage());
+        } finally {
+            DatabaseManager.shutdown();
+            Metrics.stopExporter();
+        }
+    }
+}
@@ -0,0 +1,692 @@
+package healthcare;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * JSON over HTTP for the operations of the interactive menu, on the JDK's built-in server.
+ *
+ *   POST   /patients                     {"id", "name", "age", "gender", "contactNumber", "conditions"?}
+ *   GET    /patients/{id}
+ *   POST   /patients/{id}/conditions     {"condition"}
+ *   GET    /patients/{id}/conditions?after=&limit=
+ *   GET    /patients/{id}/appointments?when=upcoming|past
+ *   POST   /doctors                      {"id", "name", "specialization", "contactNumber"}
+ *   GET    /doctors/{id}
+ *   DELETE /doctors/{id}
+ *   GET    /doctors/{id}/appointments?from=&to=
+ *   POST   /appointments                 {"patientId", "doctorId", "date", "time"?}
+ *   GET    /reports?from=&days=&top=
+ *   GET    /metrics
+ *   GET    /metrics/prometheus
+ *
+ * Every request runs on its own virtual thread when the JVM has them (Java 21+)
+ * and on a pooled platform thread otherwise. The DatabaseManager connection pool
+ * bounds how many of them touch the database at once.
+ */
+class HealthcareServer {
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    // The labels latencies and operation metrics are kept under; see routeName
+    private static final Set<String> ROUTES = Set.of(
+            "POST /patients", "GET /patients", "GET /patients/{id}",
+            "POST /patients/{id}/conditions", "GET /patients/{id}/conditions", "GET /patients/{id}/appointments",
+            "POST /doctors", "GET /doctors", "DELETE /doctors", "GET /doctors/{id}", "DELETE /doctors/{id}",
+            "GET /doctors/{id}/appointments", "POST /appointments", "GET /reports",
+            "GET /metrics", "GET /metrics/prometheus");
+    private static final String UNMATCHED_ROUTE = "unmatched";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BookingEngine bookingEngine;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final LatencyHistogram allRequests = new LatencyHistogram();
+
+    HealthcareServer(int port, BookingEngine bookingEngine) throws IOException {
+        this.bookingEngine = bookingEngine;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /** Per-route latency, keyed like "GET /patients/{id}". */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return latencies;
+    }
+
+    // Virtual threads when the runtime has them, otherwise one platform thread per in-flight request
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "http-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Thrown by handlers to send an error status with a message. */
+    private static final class HttpError extends Exception {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String route = "unknown";
+        try {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            route = routeName(method, parts);
+            dispatch(exchange, method, parts);
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (ValidationException e) {
+            sendError(exchange, 400, e.getError());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (SlotUnavailableException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (SQLException e) {
+            String state = e.getSQLState();
+            boolean conflict = state != null && state.startsWith("23");
+            if (!conflict) {
+                failed(route, e);
+            }
+            sendError(exchange, conflict ? 409 : 500, e.getMessage());
+        } catch (Exception e) {
+            failed(route, e);
+            sendError(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+            long elapsed = System.nanoTime() - start;
+            allRequests.record(elapsed);
+            latencies.computeIfAbsent(route, r -> new LatencyHistogram()).record(elapsed);
+            Metrics.operation("http " + route).finish(start);
+        }
+    }
+
+    // Only server-side failures; 4xx answers are the client's mistake and are not errors here
+    private static void failed(String route, Exception e) {
+        Metrics.operation("http " + route).failed(e);
+        Log.error("http_request_failed", route + " failed", e, "route", route);
+    }
+
+    // parts[0] is always "" because the path starts with '/'
+    private void dispatch(HttpExchange exchange, String method, String[] parts) throws Exception {
+        String resource = parts.length > 1 ? parts[1] : "";
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        switch (resource) {
+            case "patients":
+                if (parts.length == 2 && method.equals("POST")) {
+                    createPatient(exchange);
+                } else if (parts.length == 2 && method.equals("GET")) {
+                    searchPatients(exchange, query);
+                } else if (parts.length == 3 && method.equals("GET")) {
+                    sendJson(exchange, 200, patientJson(requirePatient(parts[2])));
+                } else if (parts.length == 4 && parts[3].equals("conditions") && method.equals("POST")) {
+                    addCondition(exchange, requirePatient(parts[2]));
+                } else if (parts.length == 4 && parts[3].equals("conditions") && method.equals("GET")) {
+                    listConditions(exchange, requirePatient(parts[2]), query);
+                } else if (parts.length == 4 && parts[3].equals("appointments") && method.equals("GET")) {
+                    Patient patient = requirePatient(parts[2]);
+                    LocalDate today = LocalDate.now();
+                    boolean past = "past".equals(query.get("when"));
+                    streamAppointments(exchange, past
+                            ? AppointmentQueries.getPastForPatient(patient.getPatientID(), today)
+                            : AppointmentQueries.getUpcomingForPatient(patient.getPatientID(), today));
+                } else {
+                    throw new HttpError(404, "No such endpoint");
+                }
+                break;
+            case "doctors":
+                if (parts.length == 2 && method.equals("POST")) {
+                    createDoctor(exchange);
+                } else if (parts.length == 2 && method.equals("GET")) {
+                    searchDoctors(exchange, query);
+                } else if (parts.length == 2 && method.equals("DELETE")) {
+                    deleteDoctors(exchange, parseIds(query.get("ids")), query);
+                } else if (parts.length == 3 && method.equals("GET")) {
+                    sendJson(exchange, 200, doctorJson(requireDoctor(parts[2])));
+                } else if (parts.length == 3 && method.equals("DELETE")) {
+                    deleteDoctors(exchange, Collections.singletonList(parseId(parts[2])), query);
+                } else if (parts.length == 4 && parts[3].equals("appointments") && method.equals("GET")) {
+                    Doctor doctor = requireDoctor(parts[2]);
+                    LocalDate from = query.containsKey("from") ? Validation.parseDate("from", query.get("from")) : LocalDate.now();
+                    LocalDate to = query.containsKey("to") ? Validation.parseDate("to", query.get("to")) : from;
+                    streamAppointments(exchange, AppointmentQueries.getDoctorSchedule(doctor.getDoctorID(), from, to));
+                } else {
+                    throw new HttpError(404, "No such endpoint");
+                }
+                break;
+            case "appointments":
+                if (parts.length == 2 && method.equals("POST")) {
+                    bookAppointment(exchange);
+                } else {
+                    throw new HttpError(404, "No such endpoint");
+                }
+                break;
+            case "reports":
+                if (parts.length == 2 && method.equals("GET")) {
+                    sendJson(exchange, 200, reportsJson(query));
+                } else {
+                    throw new HttpError(404, "No such endpoint");
+                }
+                break;
+            case "metrics":
+                if (parts.length == 3 && parts[2].equals("prometheus")) {
+                    sendText(exchange, 200, Metrics.PROMETHEUS_CONTENT_TYPE, Metrics.prometheusText());
+                } else {
+                    sendJson(exchange, 200, metricsJson());
+                }
+                break;
+            default:
+                throw new HttpError(404, "No such endpoint");
+        }
+    }
+
+    private void createPatient(HttpExchange exchange) throws Exception {
+        Map<String, Object> body = readBody(exchange);
+        Patient patient = new Patient(intField(body, "id"), stringField(body, "name"), intField(body, "age"),
+                stringField(body, "gender"), stringField(body, "contactNumber"));
+        Object conditions = body.get("conditions");
+        if (conditions instanceof List) {
+            for (Object condition : (List<?>) conditions) {
+                patient.addMedicalCondition(String.valueOf(condition));
+            }
+        }
+        DatabaseManager.insertPatient(patient);
+        sendJson(exchange, 201, patientJson(patient));
+    }
+
+    private void createDoctor(HttpExchange exchange) throws Exception {
+        Map<String, Object> body = readBody(exchange);
+        Doctor doctor = new Doctor(intField(body, "id"), stringField(body, "name"),
+                stringField(body, "specialization"), stringField(body, "contactNumber"));
+        DatabaseManager.insertDoctor(doctor);
+        sendJson(exchange, 201, doctorJson(doctor));
+    }
+
+    // GET /patients?name=jo+sm or ?condition=diab, answered from the in-memory search index
+    private void searchPatients(HttpExchange exchange, Map<String, String> query) throws Exception {
+        SearchIndex index = DatabaseManager.getSearchIndex();
+        int limit = searchLimit(query);
+        List<SearchIndex.Hit> hits;
+        if (query.containsKey("name")) {
+            hits = index.findPatientsByName(query.get("name"), limit);
+        } else if (query.containsKey("condition")) {
+            hits = index.findPatientsByCondition(query.get("condition"), limit);
+        } else {
+            throw new HttpError(400, "Give a 'name' or 'condition' to search for");
+        }
+        sendJson(exchange, 200, hitsJson(hits));
+    }
+
+    // GET /doctors?name=... or ?specialization=...
+    private void searchDoctors(HttpExchange exchange, Map<String, String> query) throws Exception {
+        SearchIndex index = DatabaseManager.getSearchIndex();
+        int limit = searchLimit(query);
+        List<SearchIndex.Hit> hits;
+        if (query.containsKey("name")) {
+            hits = index.findDoctorsByName(query.get("name"), limit);
+        } else if (query.containsKey("specialization")) {
+            hits = index.findDoctorsBySpecialization(query.get("specialization"), limit);
+        } else {
+            throw new HttpError(400, "Give a 'name' or 'specialization' to search for");
+        }
+        sendJson(exchange, 200, hitsJson(hits));
+    }
+
+    private static int searchLimit(Map<String, String> query) throws HttpError {
+        return parseLimit(query, SearchIndex.DEFAULT_LIMIT, SearchIndex.MAX_LIMIT);
+    }
+
+    // Larger limits are capped at max; zero, negative and non-numeric ones are the client's mistake
+    private static int parseLimit(Map<String, String> query, int defaultLimit, int max) throws HttpError {
+        String value = query.get("limit");
+        if (value == null) {
+            return defaultLimit;
+        }
+        try {
+            long limit = Long.parseLong(value);
+            if (limit >= 1) {
+                return (int) Math.min(max, limit);
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new HttpError(400, "limit must be a whole number of at least 1");
+    }
+
+    private static Map<String, Object> hitsJson(List<SearchIndex.Hit> hits) {
+        List<Object> results = new ArrayList<>(hits.size());
+        for (SearchIndex.Hit hit : hits) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", hit.getId());
+            json.put("name", hit.getName());
+            if (hit.getDetail() != null) {
+                json.put("specialization", hit.getDetail());
+            }
+            results.add(json);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("results", results);
+        return json;
+    }
+
+    private void addCondition(HttpExchange exchange, Patient patient) throws Exception {
+        String condition = stringField(readBody(exchange), "condition");
+        if (!DatabaseManager.addMedicalCondition(patient.getPatientID(), condition)) {
+            throw new HttpError(500, "Could not add medical condition");
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("patientId", patient.getPatientID());
+        json.put("condition", condition);
+        sendJson(exchange, 201, json);
+    }
+
+    private void listConditions(HttpExchange exchange, Patient patient, Map<String, String> query) throws IOException, HttpError {
+        long after = query.containsKey("after") ? Long.parseLong(query.get("after")) : 0L;
+        int limit = parseLimit(query, 100, 1000);
+        List<MedicalConditionEntry> page = DatabaseManager.getMedicalHistoryPage(patient.getPatientID(), after, limit);
+        List<Object> entries = new ArrayList<>(page.size());
+        for (MedicalConditionEntry entry : page) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("entryId", entry.getEntryID());
+            json.put("condition", entry.getCondition());
+            json.put("recordedAt", entry.getRecordedAt() == null ? null : entry.getRecordedAt().toString());
+            entries.add(json);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("entries", entries);
+        json.put("next", page.size() == limit ? page.get(page.size() - 1).getEntryID() : null);
+        sendJson(exchange, 200, json);
+    }
+
+    // DELETE /doctors/{id} or DELETE /doctors?ids=1,2,3; add reassign=true to keep future appointments
+    private void deleteDoctors(HttpExchange exchange, List<Integer> doctorIds, Map<String, String> query) throws Exception {
+        boolean reassign = Boolean.parseBoolean(query.get("reassign"));
+        DoctorRemoval.Report report = DatabaseManager.deleteDoctors(doctorIds, reassign ? bookingEngine : null);
+        if (report.getDoctorsDeleted() == 0) {
+            throw new HttpError(404, doctorIds.size() == 1 ? "Doctor " + doctorIds.get(0) + " not found" : "None of the doctors were found");
+        }
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> phase : report.getPhaseNanos().entrySet()) {
+            phases.put(phase.getKey(), phase.getValue() / 1_000_000.0);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("doctorsRequested", report.getDoctorsRequested());
+        json.put("doctorsDeleted", report.getDoctorsDeleted());
+        json.put("appointmentsDeleted", report.getAppointmentsDeleted());
+        json.put("appointmentsReassigned", report.getAppointmentsReassigned());
+        json.put("phasesMs", phases);
+        json.put("totalMs", report.getTotalNanos() / 1_000_000.0);
+        sendJson(exchange, 200, json);
+    }
+
+    private void bookAppointment(HttpExchange exchange) throws Exception {
+        Map<String, Object> body = readBody(exchange);
+        Patient patient = requirePatient(String.valueOf(intField(body, "patientId")));
+        Doctor doctor = requireDoctor(String.valueOf(intField(body, "doctorId")));
+        Object time = body.get("time");
+        Appointment appointment = bookingEngine.book(patient, doctor, stringField(body, "date"),
+                time == null ? null : LocalTime.parse(time.toString()));
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", appointment.getAppointmentID());
+        json.put("patientId", patient.getPatientID());
+        json.put("doctorId", doctor.getDoctorID());
+        json.put("date", appointment.getAppointmentDate().toString());
+        json.put("time", appointment.getStartTime() == null ? null : appointment.getStartTime().toString());
+        sendJson(exchange, 201, json);
+    }
+
+    // Writes the listing as it is read, one page of rows at a time, instead of building it in memory.
+    // A page that fails to load throws out of the loop, so the array is never closed and the
+    // client cannot mistake the rows already sent for the full listing.
+    private static void streamAppointments(HttpExchange exchange, Stream<AppointmentQueries.Summary> rows) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            out.write('[');
+            Iterator<AppointmentQueries.Summary> it = rows.iterator();
+            StringBuilder row = new StringBuilder(128);
+            boolean first = true;
+            while (it.hasNext()) {
+                AppointmentQueries.Summary summary = it.next();
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("id", summary.getAppointmentID());
+                json.put("patientId", summary.getPatientID());
+                json.put("doctorId", summary.getDoctorID());
+                json.put("date", summary.getAppointmentDate().toString());
+                row.setLength(0);
+                if (!first) {
+                    row.append(',');
+                }
+                first = false;
+                Json.write(json, row);
+                out.append(row);
+            }
+            out.write(']');
+        }
+    }
+
+    // Refreshes first, which only reads the rows added since the last report
+    private static Map<String, Object> reportsJson(Map<String, String> query) throws Exception {
+        LocalDate from = query.containsKey("from") ? Validation.parseDate("from", query.get("from")) : Reports.weekStart(LocalDate.now());
+        int days = query.containsKey("days") ? parseCount("days", query.get("days"), 366) : Reports.DEFAULT_DAYS;
+        int top = query.containsKey("top") ? parseCount("top", query.get("top"), 1000) : Reports.DEFAULT_TOP;
+        Reports reports = DatabaseManager.getReports();
+        reports.refresh();
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("from", from.toString());
+        json.put("to", from.plusDays(days - 1).toString());
+        List<Object> doctors = new ArrayList<>();
+        for (Reports.DoctorLoad load : reports.getDoctorLoad(from, days)) {
+            Map<String, Object> doctor = new LinkedHashMap<>();
+            doctor.put("id", load.getDoctorId());
+            doctor.put("name", load.getName());
+            doctor.put("specialization", load.getSpecialization());
+            List<Object> perDay = new ArrayList<>();
+            for (long count : load.getPerDay()) {
+                perDay.add(count);
+            }
+            doctor.put("perDay", perDay);
+            doctor.put("total", load.getTotal());
+            doctors.add(doctor);
+        }
+        json.put("appointmentsPerDoctor", doctors);
+        json.put("specializationDemand", countsJson(reports.getSpecializationDemand(from, days)));
+        json.put("patientsByAgeAndGender", reports.getPatientsByAgeAndGender());
+        json.put("topConditions", countsJson(reports.getTopConditions(top)));
+        json.put("stats", reports.getStats().toString());
+        return json;
+    }
+
+    private static Map<String, Object> countsJson(List<Reports.Count> counts) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (Reports.Count count : counts) {
+            json.put(count.getLabel(), count.getCount());
+        }
+        return json;
+    }
+
+    private static int parseCount(String name, String value, int max) throws HttpError {
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 1 && count <= max) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new HttpError(400, name + " must be a number from 1 to " + max);
+    }
+
+    private Map<String, Object> metricsJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("requests", histogramJson(allRequests));
+        Map<String, Object> routes = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            routes.put(entry.getKey(), histogramJson(entry.getValue()));
+        }
+        json.put("routes", routes);
+        json.put("connectionPool", DatabaseManager.getPoolStats().toString());
+        json.put("statementCache", DatabaseManager.getStatementCacheStats().toString());
+        json.put("patientCache", DatabaseManager.getPatientCacheStats().toString());
+        json.put("doctorCache", DatabaseManager.getDoctorCacheStats().toString());
+        json.put("searchIndex", DatabaseManager.getSearchIndex().getStats().toString());
+        json.put("searchQueries", histogramJson(DatabaseManager.getSearchIndex().getQueryLatency()));
+        json.put("reports", DatabaseManager.getReports().getStats().toString());
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Metrics.Operation operation : Metrics.getOperations().values()) {
+            if (operation.getCalls() > 0 && !operation.getName().startsWith("http ")) {
+                operations.put(operation.getName(), operation.toString());
+            }
+        }
+        json.put("operations", operations);
+        WriteBehind writeBehind = DatabaseManager.getWriteBehind();
+        if (writeBehind != null) {
+            json.put("writeBehind", writeBehind.getStats().toString());
+        }
+        return json;
+    }
+
+    static Map<String, Object> histogramJson(LatencyHistogram histogram) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("count", histogram.getCount());
+        json.put("p50Ms", histogram.getPercentileMillis(50));
+        json.put("p90Ms", histogram.getPercentileMillis(90));
+        json.put("p99Ms", histogram.getPercentileMillis(99));
+        json.put("p999Ms", histogram.getPercentileMillis(99.9));
+        json.put("maxMs", histogram.getMaxNanos() / 1_000_000.0);
+        return json;
+    }
+
+    private static Map<String, Object> patientJson(Patient patient) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", patient.getPatientID());
+        json.put("name", patient.getName());
+        json.put("age", patient.getAge());
+        json.put("gender", patient.getGender());
+        json.put("contactNumber", patient.getContactNumber());
+        json.put("medicalHistory", patient.getMedicalConditions());
+        return json;
+    }
+
+    private static Map<String, Object> doctorJson(Doctor doctor) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", doctor.getDoctorID());
+        json.put("name", doctor.getName());
+        json.put("specialization", doctor.getSpecialization());
+        json.put("contactNumber", doctor.getContactNumber());
+        return json;
+    }
+
+    private static Patient requirePatient(String id) throws HttpError {
+        Patient patient = DatabaseManager.getPatientById(parseId(id));
+        if (patient == null) {
+            throw new HttpError(404, "Patient " + id + " not found");
+        }
+        return patient;
+    }
+
+    private static Doctor requireDoctor(String id) throws HttpError {
+        Doctor doctor = DatabaseManager.getDoctorById(parseId(id));
+        if (doctor == null) {
+            throw new HttpError(404, "Doctor " + id + " not found");
+        }
+        return doctor;
+    }
+
+    private static List<Integer> parseIds(String ids) throws HttpError {
+        if (ids == null || ids.isEmpty()) {
+            throw new HttpError(400, "Give the doctor IDs as ids=1,2,3");
+        }
+        List<Integer> parsed = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            parsed.add(parseId(id.trim()));
+        }
+        return parsed;
+    }
+
+    private static int parseId(String id) throws HttpError {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Invalid ID: " + id);
+        }
+    }
+
+    // Collapses IDs so latency is tracked per endpoint rather than per record
+    private static String routeName(String method, String[] parts) {
+        StringBuilder route = new StringBuilder(method).append(' ');
+        for (int i = 1; i < parts.length; i++) {
+            route.append('/').append(i == 2 && !parts[1].equals("metrics") ? "{id}" : parts[i]);
+        }
+        String name = parts.length <= 1 ? route.append('/').toString() : route.toString();
+        // Anything else would let clients mint a new metrics label per request
+        return ROUTES.contains(name) ? name : UNMATCHED_ROUTE;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException, HttpError {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, n);
+                if (buffer.size() > MAX_BODY_BYTES) {
+                    throw new HttpError(413, "Request body too large");
+                }
+            }
+        }
+        return Json.parseObject(buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String stringField(Map<String, Object> body, String name) throws HttpError {
+        Object value = body.get(name);
+        if (value == null) {
+            throw new HttpError(400, "Missing field '" + name + "'");
+        }
+        return value.toString();
+    }
+
+    private static int intField(Map<String, Object> body, String name) throws HttpError {
+        Object value = body.get(name);
+        if (value instanceof Long) {
+            long number = (Long) value;
+            if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                return (int) number;
+            }
+            throw new HttpError(400, "Field '" + name + "' is out of range");
+        }
+        if (value instanceof String) {
+            try {
+                return Integer.parseInt((String) value);
+            } catch (NumberFormatException e) {
+                // Fall through to the error below
+            }
+        }
+        throw new HttpError(400, "Field '" + name + "' must be a whole number");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("error", message);
+        sendErrorJson(exchange, status, json);
+    }
+
+    // Field errors also say which field failed and why, so clients can point at the input
+    private static void sendError(HttpExchange exchange, int status, Validation.FieldError error) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("error", error.getMessage());
+        json.put("field", error.getField());
+        json.put("code", error.getCode().name());
+        if (error.getPosition() >= 0) {
+            json.put("position", error.getPosition());
+        }
+        sendErrorJson(exchange, status, json);
+    }
+
+    private static void sendErrorJson(HttpExchange exchange, int status, Map<String, Object> json) {
+        try {
+            sendJson(exchange, status, json);
+        } catch (IOException e) {
+            // Headers were already sent (e.g. mid-stream) or the client went away
+        }
+    }
+
+    /** Handles "java Healthcare serve [port]". */
+    static void runServe(String[] args, BookingEngine bookingEngine) throws IOException, InterruptedException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        HealthcareServer server = new HealthcareServer(port, bookingEngine);
+        server.start();
+        System.out.println("Healthcare API listening on port " + server.getPort() + " (Ctrl+C to stop)");
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,220 @@
+package healthcare;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Structured logging that stays off the caller's thread.
+ *
+ * A call only captures the event name, message, fields and time, and puts them on
+ * a bounded queue. A background thread formats each record as one JSON object per
+ * line and writes it to standard error, or to the file named by healthcare.log.file.
+ * If the queue is full, the record is dropped and counted instead of making the
+ * caller wait. Records still queued when the JVM exits are written by a shutdown
+ * hook. Errors are logged with their cause chain and stack trace.
+ */
+final class Log {
+
+    enum Level {
+        INFO, WARN, ERROR
+    }
+
+    private static final class Record {
+        final long timeMillis;
+        final Level level;
+        final String event;
+        final String message;
+        final Throwable error;
+        final Object[] fields;
+        final String thread;
+
+        Record(Level level, String event, String message, Throwable error, Object[] fields) {
+            this.timeMillis = System.currentTimeMillis();
+            this.level = level;
+            this.event = event;
+            this.message = message;
+            this.error = error;
+            this.fields = fields;
+            this.thread = Thread.currentThread().getName();
+        }
+    }
+
+    private static final int MAX_DRAIN = 256;
+
+    private static final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(Integer.getInteger("healthcare.log.queueSize", 8192));
+    private static final LongAdder written = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final Writer out = openSink(System.getProperty("healthcare.log.file"));
+
+    static {
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    /** Fields are alternating names and values, e.g. "patientId", 42. */
+    static void info(String event, String message, Object... fields) {
+        enqueue(new Record(Level.INFO, event, message, null, fields));
+    }
+
+    static void warn(String event, String message, Object... fields) {
+        enqueue(new Record(Level.WARN, event, message, null, fields));
+    }
+
+    /** SQLExceptions are logged with their SQLState and vendor error code. */
+    static void error(String event, String message, Throwable error, Object... fields) {
+        enqueue(new Record(Level.ERROR, event, message, error, fields));
+    }
+
+    static long getWritten() {
+        return written.sum();
+    }
+
+    static long getDropped() {
+        return dropped.sum();
+    }
+
+    private static void enqueue(Record record) {
+        if (!queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    private static Writer openSink(String file) {
+        if (file != null && !file.isEmpty()) {
+            try {
+                return Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Cannot open log file " + file + ", logging to standard error: " + e.getMessage());
+            }
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+    }
+
+    private static void writeLoop() {
+        List<Record> batch = new ArrayList<>(MAX_DRAIN);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_DRAIN - 1);
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // Losing one batch is better than losing the writer, and with it every later record
+                dropped.add(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    // Waits briefly for anything still queued; also run at JVM exit
+    static void flush() {
+        List<Record> batch = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!queue.isEmpty() && System.nanoTime() < deadline) {
+            queue.drainTo(batch, MAX_DRAIN);
+            write(batch);
+            batch.clear();
+        }
+        synchronized (out) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // Nowhere left to report it
+            }
+        }
+    }
+
+    // One flush per batch rather than per line; the lock keeps the shutdown hook and the writer thread apart
+    private static void write(List<Record> batch) {
+        StringBuilder lines = new StringBuilder(batch.size() * 160);
+        int formatted = 0;
+        for (Record record : batch) {
+            int start = lines.length();
+            try {
+                Json.write(toJson(record), lines);
+                lines.append('\n');
+                formatted++;
+            } catch (RuntimeException e) {
+                // A field whose toString() throws, for instance; the rest of the batch still goes out
+                lines.setLength(start);
+                dropped.increment();
+            }
+        }
+        synchronized (out) {
+            try {
+                out.write(lines.toString());
+                out.flush();
+                written.add(formatted);
+            } catch (IOException e) {
+                dropped.add(formatted);
+            }
+        }
+    }
+
+    private static Map<String, Object> toJson(Record record) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("ts", Instant.ofEpochMilli(record.timeMillis).toString());
+        json.put("level", record.level.name());
+        json.put("event", record.event);
+        json.put("thread", record.thread);
+        json.put("message", record.message);
+        for (int i = 0; i + 1 < record.fields.length; i += 2) {
+            json.put(String.valueOf(record.fields[i]), record.fields[i + 1]);
+        }
+        if (record.error != null) {
+            json.put("error", record.error.getClass().getName());
+            json.put("errorMessage", record.error.getMessage());
+            if (record.error instanceof SQLException) {
+                SQLException e = (SQLException) record.error;
+                json.put("sqlState", e.getSQLState());
+                json.put("vendorCode", e.getErrorCode());
+            }
+            json.put("causes", causes(record.error));
+            StringWriter trace = new StringWriter();
+            record.error.printStackTrace(new PrintWriter(trace));
+            json.put("stackTrace", trace.toString());
+        }
+        return json;
+    }
+
+    // "class: message" for each cause below the error, stopping at a cycle
+    private static List<String> causes(Throwable error) {
+        List<String> causes = new ArrayList<>();
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.add(error);
+        for (Throwable cause = error.getCause(); cause != null && seen.add(cause); cause = cause.getCause()) {
+            causes.add(cause.getClass().getName() + ": " + cause.getMessage());
+        }
+        return causes;
+    }
+}
@@ -0,0 +1,307 @@
+package healthcare;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Call counts, error counts and latency histograms for named operations.
+ *
+ * Instrumented code keeps its {@link Operation} in a static final field, so
+ * recording a call costs a few LongAdder and histogram increments with no lookup
+ * and no allocation. Failures are counted by SQLState, or by exception type for
+ * errors that are not SQLExceptions. An operation slower than
+ * healthcare.metrics.slowMillis is logged.
+ *
+ * Every call, slow call and failure is also a JFR event (healthcare.Operation,
+ * healthcare.SlowOperation, healthcare.OperationFailed). Each costs one enabled
+ * check unless a recording turns it on. Everything can be read in the Prometheus
+ * text format from GET /metrics/prometheus on the HTTP service, or, for the menu
+ * and the import command, from a loopback-only exporter on healthcare.metrics.port.
+ */
+final class Metrics {
+
+    /** One named operation, such as "db.insertPatient" or "http POST /patients". */
+    static final class Operation {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> errorsByCode = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public long getCalls() { return calls.sum(); }
+        public long getErrors() { return errors.sum(); }
+        public long getSlowCalls() { return slow.sum(); }
+        public LatencyHistogram getLatency() { return latency; }
+
+        /** Failures keyed by SQLState, or by exception class name when there is none. */
+        public Map<String, Long> getErrorsByCode() {
+            Map<String, Long> snapshot = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> entry : errorsByCode.entrySet()) {
+                snapshot.put(entry.getKey(), entry.getValue().sum());
+            }
+            return snapshot;
+        }
+
+        /** Counts a call and records the time since start, a System.nanoTime() reading. */
+        void finish(long start) {
+            long elapsed = System.nanoTime() - start;
+            calls.increment();
+            latency.record(elapsed);
+            OperationEvent event = new OperationEvent();
+            if (event.isEnabled()) {
+                event.operation = name;
+                event.latency = elapsed;
+                event.commit();
+            }
+            if (elapsed >= SLOW_NANOS) {
+                slow(elapsed);
+            }
+        }
+
+        /** Counts a call without timing it, for menu choices that spend most of their time waiting on input. */
+        void mark() {
+            calls.increment();
+        }
+
+        /** Counts a failure; call once per failed call, in addition to finish or mark. */
+        void failed(Throwable error) {
+            errors.increment();
+            String code = errorCode(error);
+            errorsByCode.computeIfAbsent(code, c -> new LongAdder()).increment();
+            OperationFailedEvent event = new OperationFailedEvent();
+            if (event.isEnabled()) {
+                event.operation = name;
+                event.code = code;
+                event.message = error.getMessage();
+                event.commit();
+            }
+        }
+
+        private void slow(long elapsed) {
+            slow.increment();
+            double millis = elapsed / 1_000_000.0;
+            Log.warn("slow_operation", name + " took " + String.format("%.1f", millis) + " ms",
+                    "operation", name, "durationMs", millis, "thresholdMs", SLOW_NANOS / 1_000_000.0);
+            SlowOperationEvent event = new SlowOperationEvent();
+            if (event.isEnabled()) {
+                event.operation = name;
+                event.latency = elapsed;
+                event.commit();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d, errors=%d, slow=%d, %s", getCalls(), getErrors(), getSlowCalls(), latency);
+        }
+    }
+
+    @Name("healthcare.Operation")
+    @Label("Healthcare Operation")
+    @Category("Healthcare")
+    @Description("A completed database, menu or HTTP operation")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        // Event's own duration is taken from begin() and end(), which these events do not use
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("healthcare.SlowOperation")
+    @Label("Slow Healthcare Operation")
+    @Category("Healthcare")
+    @Description("An operation that took longer than healthcare.metrics.slowMillis")
+    static final class SlowOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("healthcare.OperationFailed")
+    @Label("Failed Healthcare Operation")
+    @Category("Healthcare")
+    @Description("An operation that threw; code is the SQLState or exception type")
+    static final class OperationFailedEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Error Code")
+        String code;
+
+        @Label("Message")
+        String message;
+    }
+
+    static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("healthcare.metrics.slowMillis", 250L));
+
+    // Histogram bucket bounds for the export, in seconds, written as they appear in the le label
+    private static final String[] BUCKETS = {
+            "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5",
+            "1", "2.5", "5", "10"
+    };
+
+    private static final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    private static HttpServer exporter;
+
+    private Metrics() {
+    }
+
+    /** The operation with this name, created on first use. */
+    static Operation operation(String name) {
+        Operation operation = operations.get(name);
+        return operation != null ? operation : operations.computeIfAbsent(name, Operation::new);
+    }
+
+    /** All operations by name. */
+    static Map<String, Operation> getOperations() {
+        return new TreeMap<>(operations);
+    }
+
+    private static String errorCode(Throwable error) {
+        if (error instanceof SQLException && ((SQLException) error).getSQLState() != null) {
+            return ((SQLException) error).getSQLState();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    /** Every operation, plus the logger's own counters, in the Prometheus text exposition format. */
+    static String prometheusText() {
+        Map<String, Operation> snapshot = getOperations();
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "healthcare_operation_calls_total", "counter", "Completed calls per operation.");
+        for (Operation operation : snapshot.values()) {
+            sample(out, "healthcare_operation_calls_total", operation.name, null, null, operation.getCalls());
+        }
+        header(out, "healthcare_operation_errors_total", "counter", "Failed calls per operation and SQLState or exception type.");
+        for (Operation operation : snapshot.values()) {
+            for (Map.Entry<String, Long> error : operation.getErrorsByCode().entrySet()) {
+                sample(out, "healthcare_operation_errors_total", operation.name, "code", error.getKey(), error.getValue());
+            }
+        }
+        header(out, "healthcare_operation_slow_total", "counter", "Calls slower than healthcare.metrics.slowMillis.");
+        for (Operation operation : snapshot.values()) {
+            sample(out, "healthcare_operation_slow_total", operation.name, null, null, operation.getSlowCalls());
+        }
+        header(out, "healthcare_operation_duration_seconds", "histogram", "Operation latency.");
+        for (Operation operation : snapshot.values()) {
+            LatencyHistogram latency = operation.latency;
+            long count = latency.getCount();
+            if (count == 0) {
+                continue;
+            }
+            for (String bound : BUCKETS) {
+                long nanos = (long) (Double.parseDouble(bound) * 1_000_000_000L);
+                // Buckets are read one at a time, so keep them from passing the count read above
+                sample(out, "healthcare_operation_duration_seconds_bucket", operation.name, "le", bound,
+                        Math.min(count, latency.countAtOrBelow(nanos)));
+            }
+            sample(out, "healthcare_operation_duration_seconds_bucket", operation.name, "le", "+Inf", count);
+            sample(out, "healthcare_operation_duration_seconds_sum", operation.name, null, null, latency.getSumNanos() / 1e9);
+            sample(out, "healthcare_operation_duration_seconds_count", operation.name, null, null, count);
+        }
+
+        header(out, "healthcare_log_records_total", "counter", "Log records written.");
+        out.append("healthcare_log_records_total ").append(Log.getWritten()).append('\n');
+        header(out, "healthcare_log_dropped_total", "counter", "Log records dropped because the log queue was full.");
+        out.append("healthcare_log_dropped_total ").append(Log.getDropped()).append('\n');
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String metric, String type, String help) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String operation, String label, String value, Object number) {
+        out.append(metric).append("{operation=\"");
+        escapeLabel(operation, out);
+        out.append('"');
+        if (label != null) {
+            out.append(',').append(label).append("=\"");
+            escapeLabel(value, out);
+            out.append('"');
+        }
+        out.append("} ").append(number).append('\n');
+    }
+
+    private static void escapeLabel(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /** Starts the loopback exporter if healthcare.metrics.port is set; safe to call more than once. */
+    static synchronized void startExporterIfConfigured() {
+        Integer port = Integer.getInteger("healthcare.metrics.port");
+        if (port == null || exporter != null) {
+            return;
+        }
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", PROMETHEUS_CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            exporter = server;
+            Log.info("metrics_exporter_started", "Prometheus metrics on http://127.0.0.1:" + port + "/metrics", "port", port);
+        } catch (IOException e) {
+            Log.error("metrics_exporter_failed", "Could not start the metrics exporter on port " + port, e, "port", port);
+        }
+    }
+
+    static synchronized void stopExporter() {
+        if (exporter != null) {
+            exporter.stop(0);
+            exporter = null;
+        }
+    }
+}
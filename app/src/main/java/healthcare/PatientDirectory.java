@@ -0,0 +1,300 @@
+package healthcare;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Paged, searchable view of the patients table for Healthcare.jsp.
+ *
+ * Pages use keyset pagination on the sort column plus patient_id, served by the
+ * primary key and the name and age indexes created in
+ * {@link DatabaseManager#initDatabase()}, so a page costs the same however deep
+ * into the list it is. Rows are handed to the caller as they are read and are
+ * never collected. This class is public because JSPs are compiled into their own
+ * package.
+ */
+public final class PatientDirectory {
+
+    /** The columns a page may be sorted by; request parameters are matched against these only. */
+    public enum SortKey {
+        ID("patient_id"),
+        NAME("name"),
+        AGE("age");
+
+        private final String column;
+
+        SortKey(String column) {
+            this.column = column;
+        }
+
+        /** Falls back to ID for anything that is not one of the keys. */
+        public static SortKey parse(String value) {
+            if (value != null) {
+                for (SortKey key : values()) {
+                    if (key.name().equalsIgnoreCase(value)) {
+                        return key;
+                    }
+                }
+            }
+            return ID;
+        }
+    }
+
+    /** One patients row with the most recently recorded condition, if any. */
+    public static final class Row {
+        private final int patientID;
+        private final String name;
+        private final int age;
+        private final String gender;
+        private final String contactNumber;
+        private final String latestCondition;
+
+        Row(int patientID, String name, int age, String gender, String contactNumber, String latestCondition) {
+            this.patientID = patientID;
+            this.name = name;
+            this.age = age;
+            this.gender = gender;
+            this.contactNumber = contactNumber;
+            this.latestCondition = latestCondition;
+        }
+
+        public int getPatientID() { return patientID; }
+        public String getName() { return name; }
+        public int getAge() { return age; }
+        public String getGender() { return gender; }
+        public String getContactNumber() { return contactNumber; }
+        public String getLatestCondition() { return latestCondition; }
+    }
+
+    /** Receives each row of a page as it is read; may write straight to the response. */
+    public interface RowHandler {
+        void handle(Row row) throws IOException;
+    }
+
+    /** What a page returned, and the cursor for the page after it. */
+    public static final class Page {
+        private final int rowCount;
+        private final boolean hasMore;
+        private final String nextAfterKey;
+        private final int nextAfterId;
+
+        Page(int rowCount, boolean hasMore, String nextAfterKey, int nextAfterId) {
+            this.rowCount = rowCount;
+            this.hasMore = hasMore;
+            this.nextAfterKey = nextAfterKey;
+            this.nextAfterId = nextAfterId;
+        }
+
+        public int getRowCount() { return rowCount; }
+        public boolean hasMore() { return hasMore; }
+        public String getNextAfterKey() { return nextAfterKey; }
+        public int getNextAfterId() { return nextAfterId; }
+    }
+
+    /** Outcome of {@link #addPatient}, with a message ready to show to the user. */
+    public static final class AddResult {
+        private final boolean added;
+        private final String message;
+
+        AddResult(boolean added, String message) {
+            this.added = added;
+            this.message = message;
+        }
+
+        public boolean isAdded() { return added; }
+        public String getMessage() { return message; }
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String COLUMNS = "SELECT p.patient_id, p.name, p.age, p.gender, p.contact_number, " +
+            "(SELECT c.condition_text FROM medical_conditions c WHERE c.patient_id = p.patient_id " +
+            "ORDER BY c.entry_id DESC LIMIT 1) AS latest_condition FROM patients p";
+    private static final String EXISTS_SQL = "SELECT 1 FROM patients WHERE patient_id = ?";
+
+    private static boolean initialized;
+
+    private PatientDirectory() {
+    }
+
+    // The page can be the first thing to touch the database in a servlet container
+    private static synchronized void ensureInitialized() {
+        if (!initialized) {
+            DatabaseManager.initDatabase();
+            initialized = true;
+        }
+    }
+
+    public static int clampPageSize(int pageSize) {
+        return Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Streams one page of patients to the handler.
+     *
+     * @param namePrefix only names starting with this, or null or empty for everyone
+     * @param afterKey   sort value of the last row of the previous page; ignored when sorting by ID
+     * @param afterId    patient ID of the last row of the previous page, or null for the first page
+     */
+    public static Page streamPage(SortKey sort, boolean descending, String namePrefix, String afterKey, Integer afterId,
+                                  int pageSize, RowHandler handler) throws SQLException, IOException {
+        ensureInitialized();
+        int limit = clampPageSize(pageSize);
+        boolean filtered = namePrefix != null && !namePrefix.isEmpty();
+        boolean hasCursor = afterId != null && (sort == SortKey.ID || afterKey != null);
+        if (hasCursor && sort == SortKey.AGE && !isInteger(afterKey)) {
+            // A mangled cursor starts over rather than failing the page
+            hasCursor = false;
+        }
+        String sql = pageSql(sort, descending, filtered, hasCursor);
+
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (filtered) {
+                pstmt.setString(index++, escapeLike(namePrefix) + "%");
+            }
+            if (hasCursor) {
+                if (sort != SortKey.ID) {
+                    index = bindSortValue(pstmt, index, sort, afterKey);
+                    index = bindSortValue(pstmt, index, sort, afterKey);
+                }
+                pstmt.setInt(index++, afterId);
+            }
+            // One extra row tells us whether there is a next page
+            pstmt.setInt(index, limit + 1);
+
+            int rows = 0;
+            boolean hasMore = false;
+            String lastKey = null;
+            int lastId = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rows == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    Row row = new Row(rs.getInt("patient_id"), rs.getString("name"), rs.getInt("age"),
+                            rs.getString("gender"), rs.getString("contact_number"), rs.getString("latest_condition"));
+                    handler.handle(row);
+                    lastId = row.getPatientID();
+                    lastKey = sort == SortKey.NAME ? row.getName() : sort == SortKey.AGE ? String.valueOf(row.getAge()) : null;
+                    rows++;
+                }
+            }
+            return new Page(rows, hasMore, lastKey, lastId);
+        }
+    }
+
+    // Built only from the whitelisted sort columns, so no request text reaches the SQL
+    private static String pageSql(SortKey sort, boolean descending, boolean filtered, boolean hasCursor) {
+        String after = descending ? " < ?" : " > ?";
+        String direction = descending ? " DESC" : "";
+        StringBuilder sql = new StringBuilder(COLUMNS);
+        String joiner = " WHERE ";
+        if (filtered) {
+            sql.append(joiner).append("p.name LIKE ? ESCAPE '!'");
+            joiner = " AND ";
+        }
+        if (hasCursor) {
+            sql.append(joiner);
+            if (sort == SortKey.ID) {
+                sql.append("p.patient_id").append(after);
+            } else {
+                String column = "p." + sort.column;
+                sql.append('(').append(column).append(after)
+                        .append(" OR (").append(column).append(" = ? AND p.patient_id").append(after).append("))");
+            }
+        }
+        sql.append(" ORDER BY ");
+        if (sort != SortKey.ID) {
+            sql.append("p.").append(sort.column).append(direction).append(", ");
+        }
+        sql.append("p.patient_id").append(direction).append(" LIMIT ?");
+        return sql.toString();
+    }
+
+    private static int bindSortValue(PreparedStatement pstmt, int index, SortKey sort, String value) throws SQLException {
+        if (sort == SortKey.AGE) {
+            pstmt.setInt(index, Integer.parseInt(value));
+        } else {
+            pstmt.setString(index, value);
+        }
+        return index + 1;
+    }
+
+    private static boolean isInteger(String value) {
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // '!' rather than '\' as the escape character behaves the same in MySQL and H2
+    static String escapeLike(String prefix) {
+        StringBuilder escaped = new StringBuilder(prefix.length() + 4);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '!' || c == '%' || c == '_') {
+                escaped.append('!');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /** Primary key lookup; does not go through the patient cache so it always sees the table. */
+    public static boolean exists(int patientId) throws SQLException {
+        ensureInitialized();
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(EXISTS_SQL)) {
+            pstmt.setInt(1, patientId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Validates and stores a patient submitted from the page. */
+    public static AddResult addPatient(String id, String name, String age, String gender, String contactNumber,
+                                       String condition) {
+        if (id == null || id.trim().isEmpty() || name == null || name.trim().isEmpty()) {
+            return new AddResult(false, "Error: Patient ID and Name are required fields.");
+        }
+        int patientId;
+        int patientAge;
+        try {
+            patientId = Integer.parseInt(id.trim());
+            patientAge = age == null || age.trim().isEmpty() ? 0 : Integer.parseInt(age.trim());
+        } catch (NumberFormatException e) {
+            return new AddResult(false, "Error: Patient ID and Age must be whole numbers.");
+        }
+        if (patientId <= 0 || patientAge < 0) {
+            return new AddResult(false, "Error: Patient ID must be positive and Age cannot be negative.");
+        }
+        try {
+            Patient patient = new Patient(patientId, name.trim(), patientAge, gender == null ? "" : gender, contactNumber);
+            if (condition != null && !condition.trim().isEmpty()) {
+                patient.addMedicalCondition(condition.trim());
+            }
+            if (exists(patientId)) {
+                return new AddResult(false, "Error: Patient with ID " + patientId + " already exists.");
+            }
+            DatabaseManager.insertPatient(patient);
+            return new AddResult(true, "Patient added successfully.");
+        } catch (ValidationException e) {
+            return new AddResult(false, "Error: " + e.getMessage());
+        } catch (SQLException e) {
+            if (BookingEngine.isDuplicateKey(e)) {
+                // Added by someone else between the check and the insert
+                return new AddResult(false, "Error: Patient with ID " + patientId + " already exists.");
+            }
+            Log.error("insert_patient_failed", "Error inserting patient", e, "patientId", patientId);
+            return new AddResult(false, "Error: Could not save the patient.");
+        }
+    }
+}
@@ -0,0 +1,869 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Aggregate reports for management: appointments per doctor per day, demand by
+ * specialization, patients by age band and gender, and the most common medical
+ * conditions.
+ *
+ * The counts are held in memory and brought up to date by {@link #refresh()}. A
+ * refresh reads only the rows added since the last one, found by a keyset scan
+ * above the highest primary key it has seen in each table. A weekly report on a
+ * large database therefore costs a scan of the new appointments, not all of them.
+ * Each page of rows is aggregated on the common fork-join pool while the next page
+ * is read. The counters are primitive arrays and open-addressing long-to-long
+ * tables striped by key across the workers, so aggregation does no per-row boxing.
+ *
+ * Incremental refresh assumes rows are only added above the last key seen.
+ * DatabaseManager reports the writes that break that assumption: inserts with a
+ * caller-chosen ID at or below a watermark, removing doctors, and bulk imports.
+ * Any of them makes the next refresh a full rebuild. Changes made outside this
+ * process are caught by a consistency check that counts the rows at or below
+ * each watermark and compares them with what was aggregated. It costs a scan of
+ * each table's primary key, so it runs at most once per
+ * healthcare.reports.verifyIntervalSeconds rather than on every refresh. Doctors
+ * are reloaded on every refresh, so reports always show current names and
+ * specializations.
+ */
+class Reports {
+
+    /** A label and how many rows carry it, e.g. a specialization and its appointments. */
+    static final class Count {
+        private final String label;
+        private final long count;
+
+        Count(String label, long count) {
+            this.label = label;
+            this.count = count;
+        }
+
+        public String getLabel() { return label; }
+        public long getCount() { return count; }
+
+        @Override
+        public String toString() {
+            return label + ": " + count;
+        }
+    }
+
+    /** One doctor's appointments on each day of a report's date range. */
+    static final class DoctorLoad {
+        private final int doctorId;
+        private final String name;
+        private final String specialization;
+        private final long[] perDay;
+
+        DoctorLoad(int doctorId, String name, String specialization, long[] perDay) {
+            this.doctorId = doctorId;
+            this.name = name;
+            this.specialization = specialization;
+            this.perDay = perDay;
+        }
+
+        public int getDoctorId() { return doctorId; }
+        public String getName() { return name; }
+        public String getSpecialization() { return specialization; }
+        public long[] getPerDay() { return perDay.clone(); }
+
+        public long getTotal() {
+            long total = 0;
+            for (long count : perDay) {
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return doctorId + " " + name + " (" + specialization + "): " + Arrays.toString(perDay);
+        }
+    }
+
+    /** What the counts cover and how refreshes have gone. */
+    static final class Stats {
+        private final long appointments;
+        private final long patients;
+        private final long conditions;
+        private final long fullRefreshes;
+        private final long incrementalRefreshes;
+        private final long lastRowsRead;
+        private final double lastRefreshMillis;
+
+        Stats(long appointments, long patients, long conditions, long fullRefreshes, long incrementalRefreshes,
+              long lastRowsRead, double lastRefreshMillis) {
+            this.appointments = appointments;
+            this.patients = patients;
+            this.conditions = conditions;
+            this.fullRefreshes = fullRefreshes;
+            this.incrementalRefreshes = incrementalRefreshes;
+            this.lastRowsRead = lastRowsRead;
+            this.lastRefreshMillis = lastRefreshMillis;
+        }
+
+        public long getAppointments() { return appointments; }
+        public long getPatients() { return patients; }
+        public long getConditions() { return conditions; }
+        public long getFullRefreshes() { return fullRefreshes; }
+        public long getIncrementalRefreshes() { return incrementalRefreshes; }
+        public long getLastRowsRead() { return lastRowsRead; }
+        public double getLastRefreshMillis() { return lastRefreshMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("appointments=%d, patients=%d, conditions=%d, fullRefreshes=%d, incrementalRefreshes=%d, "
+                            + "lastRowsRead=%d, lastRefresh=%.1fms", appointments, patients, conditions, fullRefreshes,
+                    incrementalRefreshes, lastRowsRead, lastRefreshMillis);
+        }
+    }
+
+    /**
+     * Counts keyed by long, in open-addressing arrays with linear probing. A slot is
+     * empty while its count is 0, which holds because counts only ever go up.
+     */
+    static final class LongCounter {
+        interface Entry {
+            void accept(long key, long count);
+        }
+
+        private long[] keys;
+        private long[] counts;
+        private int size;
+
+        LongCounter(int expected) {
+            int capacity = 16;
+            while (capacity * 3 < expected * 4) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            counts = new long[capacity];
+        }
+
+        private LongCounter(LongCounter other) {
+            keys = other.keys.clone();
+            counts = other.counts.clone();
+            size = other.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(long key, long delta) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    counts[slot] += delta;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = delta;
+            if (++size * 4 > keys.length * 3) {
+                resize();
+            }
+        }
+
+        long get(long key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    return counts[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        void forEach(Entry consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    consumer.accept(keys[i], counts[i]);
+                }
+            }
+        }
+
+        LongCounter copy() {
+            return new LongCounter(this);
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new long[oldCounts.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    add(oldKeys[i], oldCounts[i]);
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * A LongCounter split by key hash into one stripe per fork-join worker. Rows are
+     * counted by one task per stripe; each task reads all the rows and keeps only the
+     * keys of its own stripe. Tasks therefore never share a table, and there is no
+     * merge step, which matters when most keys are distinct within a page, as
+     * (doctor, day) pairs are.
+     */
+    static final class StripedCounter {
+        private final LongCounter[] stripes;
+
+        StripedCounter(int stripeCount, int expected) {
+            stripes = new LongCounter[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new LongCounter(expected / stripeCount);
+            }
+        }
+
+        private StripedCounter(StripedCounter other) {
+            stripes = new LongCounter[other.stripes.length];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = other.stripes[i].copy();
+            }
+        }
+
+        long size() {
+            long size = 0;
+            for (LongCounter stripe : stripes) {
+                size += stripe.size();
+            }
+            return size;
+        }
+
+        long get(long key) {
+            return stripes[stripeOf(key, stripes.length)].get(key);
+        }
+
+        void forEach(LongCounter.Entry consumer) {
+            for (LongCounter stripe : stripes) {
+                stripe.forEach(consumer);
+            }
+        }
+
+        StripedCounter copy() {
+            return new StripedCounter(this);
+        }
+
+        // From the high half of a different multiplier than LongCounter's slot hash, so the two stay independent
+        static int stripeOf(long key, int stripeCount) {
+            long h = key * 0xC2B2AE3D27D4EB4FL;
+            return (int) (((h >>> 32) * stripeCount) >>> 32);
+        }
+    }
+
+    // Dense int codes for labels, compared without case; the label kept is the first spelling seen
+    private static final class Dictionary {
+        private final Map<String, Integer> codes;
+        private final List<String> labels;
+
+        Dictionary() {
+            codes = new HashMap<>();
+            labels = new ArrayList<>();
+        }
+
+        Dictionary(Dictionary other) {
+            codes = new HashMap<>(other.codes);
+            labels = new ArrayList<>(other.labels);
+        }
+
+        int code(String value) {
+            String label = value == null ? "" : value.trim();
+            String key = label.toLowerCase(Locale.ROOT);
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = labels.size();
+                codes.put(key, code);
+                labels.add(label);
+            }
+            return code;
+        }
+
+        int size() {
+            return labels.size();
+        }
+
+        String label(int code) {
+            return labels.get(code);
+        }
+    }
+
+    private static final class DoctorInfo {
+        final String name;
+        final String specialization;
+
+        DoctorInfo(String name, String specialization) {
+            this.name = name;
+            this.specialization = specialization;
+        }
+    }
+
+    // The tables a refresh reads incrementally, each scanned in primary key order
+    private enum Source {
+        APPOINTMENTS("SELECT appointment_id, doctor_id, appointment_date FROM appointments WHERE appointment_id > ? ORDER BY appointment_id LIMIT ?",
+                "SELECT COUNT(*) FROM appointments WHERE appointment_id <= ?"),
+        PATIENTS("SELECT patient_id, age, gender FROM patients WHERE patient_id > ? ORDER BY patient_id LIMIT ?",
+                "SELECT COUNT(*) FROM patients WHERE patient_id <= ?"),
+        CONDITIONS("SELECT entry_id, condition_text FROM medical_conditions WHERE entry_id > ? ORDER BY entry_id LIMIT ?",
+                "SELECT COUNT(*) FROM medical_conditions WHERE entry_id <= ?");
+
+        final String selectSql;
+        final String countSql;
+
+        Source(String selectSql, String countSql) {
+            this.selectSql = selectSql;
+            this.countSql = countSql;
+        }
+    }
+
+    // Everything the reports are computed from. A refresh works on a copy and publishes it when done,
+    // so readers never see a half-applied refresh and never wait for one.
+    private static final class Totals {
+        final StripedCounter doctorDays;
+        final Dictionary genders;
+        final Dictionary conditions;
+        // Indexed by gender code * AGE_BANDS + age band
+        long[] patientsByGenderAndAge;
+        // Indexed by condition code
+        long[] conditionCounts;
+        // Highest primary key and rows aggregated so far, per Source
+        final long[] watermarks;
+        final long[] rows;
+        Map<Integer, DoctorInfo> doctors = new HashMap<>();
+        long rowsRead;
+
+        Totals() {
+            doctorDays = new StripedCounter(STRIPES, 1024);
+            genders = new Dictionary();
+            conditions = new Dictionary();
+            patientsByGenderAndAge = new long[0];
+            conditionCounts = new long[0];
+            watermarks = new long[Source.values().length];
+            Arrays.fill(watermarks, Long.MIN_VALUE);
+            rows = new long[Source.values().length];
+        }
+
+        Totals(Totals other) {
+            doctorDays = other.doctorDays.copy();
+            genders = new Dictionary(other.genders);
+            conditions = new Dictionary(other.conditions);
+            patientsByGenderAndAge = other.patientsByGenderAndAge.clone();
+            conditionCounts = other.conditionCounts.clone();
+            watermarks = other.watermarks.clone();
+            rows = other.rows.clone();
+        }
+    }
+
+    // Ten-year bands, the last one open-ended
+    static final int AGE_BANDS = 10;
+    static final int DEFAULT_DAYS = 7;
+    static final int DEFAULT_TOP = 10;
+
+    // One doctor-day stripe per worker of the common pool
+    static final int STRIPES = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+    private static final int PAGE_ROWS = 50_000;
+    // Rows below which a fork-join task counts its slice instead of splitting it
+    private static final int LEAF_ROWS = 8_192;
+
+    private static final long VERIFY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(
+            Long.getLong("healthcare.reports.verifyIntervalSeconds", 300L));
+
+    private static final Metrics.Operation REFRESH = Metrics.operation("reports.refresh");
+
+    private final Object refreshLock = new Object();
+    private volatile Totals totals;
+    private volatile boolean stale;
+    private volatile long fullRefreshes;
+    private volatile long incrementalRefreshes;
+    private volatile double lastRefreshMillis;
+    // When the counts were last checked against the tables; only touched under refreshLock
+    private long lastVerifiedNanos;
+    // Lowest caller-chosen ID inserted since the current refresh started, per Source
+    private final LongAccumulator[] lowestInserted = new LongAccumulator[Source.values().length];
+
+    Reports() {
+        for (int i = 0; i < lowestInserted.length; i++) {
+            lowestInserted[i] = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        }
+    }
+
+    /** Makes the next refresh start from scratch, for changes the watermarks cannot see. */
+    void invalidate() {
+        stale = true;
+    }
+
+    /** For inserts with a caller-chosen ID, which the keyset scan misses if it is not above the watermark. */
+    void patientInserted(long patientId) {
+        inserted(Source.PATIENTS, patientId);
+    }
+
+    void appointmentInserted(long appointmentId) {
+        inserted(Source.APPOINTMENTS, appointmentId);
+    }
+
+    // Checked against the published watermarks, and by refresh() against the ones it is about to publish
+    private void inserted(Source source, long id) {
+        lowestInserted[source.ordinal()].accumulate(id);
+        Totals current = totals;
+        if (current != null && id <= current.watermarks[source.ordinal()]) {
+            stale = true;
+        }
+    }
+
+    /** Reads what changed since the last refresh; returns the number of rows read. */
+    long refresh() throws SQLException {
+        synchronized (refreshLock) {
+            long start = System.nanoTime();
+            Totals current = totals;
+            boolean full = current == null || stale;
+            // A full rebuild reads every row anyway, so only incremental refreshes are checked
+            boolean verify = !full && start - lastVerifiedNanos >= VERIFY_INTERVAL_NANOS;
+            // Cleared before reading, so an invalidate() that lands during the refresh forces another full one
+            stale = false;
+            for (LongAccumulator lowest : lowestInserted) {
+                lowest.reset();
+            }
+            try {
+                Totals next = full ? new Totals() : new Totals(current);
+                if (!load(next, verify) && !full) {
+                    Log.info("reports_rebuild", "Rows changed below the report watermarks; rebuilding the reports");
+                    long rowsRead = next.rowsRead;
+                    next = new Totals();
+                    load(next, false);
+                    next.rowsRead += rowsRead;
+                    full = true;
+                }
+                if (full || verify) {
+                    lastVerifiedNanos = start;
+                }
+                totals = next;
+                // An insert that landed during the scan may sit below the new watermark unseen
+                for (Source source : Source.values()) {
+                    if (lowestInserted[source.ordinal()].get() <= next.watermarks[source.ordinal()]) {
+                        stale = true;
+                    }
+                }
+                if (full) {
+                    fullRefreshes++;
+                } else {
+                    incrementalRefreshes++;
+                }
+                return next.rowsRead;
+            } catch (SQLException | RuntimeException e) {
+                stale = stale || full;
+                REFRESH.failed(e);
+                throw e;
+            } finally {
+                lastRefreshMillis = (System.nanoTime() - start) / 1_000_000.0;
+                REFRESH.finish(start);
+            }
+        }
+    }
+
+    // With verify, returns false if rows at or below a watermark no longer match what was aggregated
+    private static boolean load(Totals totals, boolean verify) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Map<Integer, DoctorInfo> doctors = new HashMap<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT doctor_id, name, specialization FROM doctors")) {
+                while (rs.next()) {
+                    doctors.put(rs.getInt(1), new DoctorInfo(rs.getString(2), rs.getString(3)));
+                }
+            }
+            totals.doctors = doctors;
+            boolean consistent = true;
+            for (Source source : Source.values()) {
+                consistent &= scan(conn, source, totals, verify);
+            }
+            return consistent;
+        }
+    }
+
+    // Aggregates the rows above the source's watermark; the previous page is counted while the next is read
+    private static boolean scan(Connection conn, Source source, Totals totals, boolean verify) throws SQLException {
+        int index = source.ordinal();
+        long watermark = totals.watermarks[index];
+        ForkJoinTask<?> pending = null;
+        try (PreparedStatement pstmt = conn.prepareStatement(source.selectSql)) {
+            int rows;
+            do {
+                int[] first = new int[PAGE_ROWS];
+                int[] second = source == Source.APPOINTMENTS ? new int[PAGE_ROWS] : null;
+                rows = 0;
+                pstmt.setLong(1, watermark);
+                pstmt.setInt(2, PAGE_ROWS);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        watermark = rs.getLong(1);
+                        readRow(source, rs, totals, first, second, rows++);
+                    }
+                }
+                if (pending != null) {
+                    merge(source, pending, totals);
+                    pending = null;
+                }
+                if (rows > 0) {
+                    pending = aggregate(source, totals, first, second, rows);
+                    totals.rows[index] += rows;
+                    totals.rowsRead += rows;
+                }
+            } while (rows == PAGE_ROWS);
+        }
+        if (pending != null) {
+            merge(source, pending, totals);
+        }
+        totals.watermarks[index] = watermark;
+        if (!verify) {
+            return true;
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(source.countSql)) {
+            pstmt.setLong(1, watermark);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) == totals.rows[index];
+            }
+        }
+    }
+
+    private static void readRow(Source source, ResultSet rs, Totals totals, int[] first, int[] second, int row) throws SQLException {
+        switch (source) {
+            case APPOINTMENTS:
+                first[row] = rs.getInt(2);
+                second[row] = (int) rs.getDate(3).toLocalDate().toEpochDay();
+                break;
+            case PATIENTS:
+                first[row] = totals.genders.code(rs.getString(3)) * AGE_BANDS + ageBand(rs.getInt(2));
+                break;
+            case CONDITIONS:
+                first[row] = totals.conditions.code(rs.getString(2));
+                break;
+            default:
+                throw new IllegalStateException("Unhandled source " + source);
+        }
+    }
+
+    private static ForkJoinTask<?> aggregate(Source source, Totals totals, int[] first, int[] second, int rows) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        switch (source) {
+            case APPOINTMENTS:
+                return pool.submit(new StripeTask(totals.doctorDays, first, second, rows, 0, STRIPES));
+            case PATIENTS:
+                return pool.submit(new CodeCountTask(first, 0, rows, totals.genders.size() * AGE_BANDS));
+            case CONDITIONS:
+                return pool.submit(new CodeCountTask(first, 0, rows, totals.conditions.size()));
+            default:
+                throw new IllegalStateException("Unhandled source " + source);
+        }
+    }
+
+    private static void merge(Source source, ForkJoinTask<?> task, Totals totals) {
+        switch (source) {
+            case APPOINTMENTS:
+                // The stripe tasks count straight into the totals
+                task.join();
+                break;
+            case PATIENTS:
+                totals.patientsByGenderAndAge = addCounts(totals.patientsByGenderAndAge, (long[]) task.join());
+                break;
+            case CONDITIONS:
+                totals.conditionCounts = addCounts(totals.conditionCounts, (long[]) task.join());
+                break;
+            default:
+                throw new IllegalStateException("Unhandled source " + source);
+        }
+    }
+
+    // Adds counts into target, growing it if codes were added since it was last sized
+    private static long[] addCounts(long[] target, long[] counts) {
+        long[] sum = counts.length > target.length ? Arrays.copyOf(target, counts.length) : target;
+        for (int i = 0; i < counts.length; i++) {
+            sum[i] += counts[i];
+        }
+        return sum;
+    }
+
+    static int ageBand(int age) {
+        return Math.min(Math.max(age, 0) / 10, AGE_BANDS - 1);
+    }
+
+    static String ageBandLabel(int band) {
+        return band == AGE_BANDS - 1 ? band * 10 + "+" : band * 10 + "-" + (band * 10 + 9);
+    }
+
+    static long doctorDayKey(int doctorId, int epochDay) {
+        return ((long) doctorId << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    /** Counts appointments per (doctor, day) into a new counter, as a refresh does for each page. */
+    static StripedCounter countDoctorDays(int[] doctorIds, int[] epochDays, int rows) {
+        StripedCounter counts = new StripedCounter(STRIPES, 1024);
+        ForkJoinPool.commonPool().invoke(new StripeTask(counts, doctorIds, epochDays, rows, 0, STRIPES));
+        return counts;
+    }
+
+    // Counts the first rows (doctor, day) pairs into stripes [from, to), splitting until each task has one stripe
+    private static final class StripeTask extends RecursiveAction {
+        private final StripedCounter counts;
+        private final int[] doctorIds;
+        private final int[] epochDays;
+        private final int rows;
+        private final int from;
+        private final int to;
+
+        StripeTask(StripedCounter counts, int[] doctorIds, int[] epochDays, int rows, int from, int to) {
+            this.counts = counts;
+            this.doctorIds = doctorIds;
+            this.epochDays = epochDays;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StripeTask(counts, doctorIds, epochDays, rows, from, mid),
+                        new StripeTask(counts, doctorIds, epochDays, rows, mid, to));
+                return;
+            }
+            LongCounter stripe = counts.stripes[from];
+            int stripeCount = counts.stripes.length;
+            for (int i = 0; i < rows; i++) {
+                long key = doctorDayKey(doctorIds[i], epochDays[i]);
+                if (stripeCount == 1 || StripedCounter.stripeOf(key, stripeCount) == from) {
+                    stripe.add(key, 1);
+                }
+            }
+        }
+    }
+
+    // Counts codes in [from, to) into an array indexed by code
+    private static final class CodeCountTask extends RecursiveTask<long[]> {
+        private final int[] codes;
+        private final int from;
+        private final int to;
+        private final int codeCount;
+
+        CodeCountTask(int[] codes, int from, int to, int codeCount) {
+            this.codes = codes;
+            this.from = from;
+            this.to = to;
+            this.codeCount = codeCount;
+        }
+
+        @Override
+        protected long[] compute() {
+            // With many distinct codes, larger slices keep each slice's array small next to its rows
+            if (to - from <= Math.max(LEAF_ROWS, codeCount)) {
+                long[] counts = new long[codeCount];
+                for (int i = from; i < to; i++) {
+                    counts[codes[i]]++;
+                }
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            CodeCountTask left = new CodeCountTask(codes, from, mid, codeCount);
+            left.fork();
+            long[] right = new CodeCountTask(codes, mid, to, codeCount).compute();
+            return addCounts(left.join(), right);
+        }
+    }
+
+    private Totals current() throws SQLException {
+        Totals current = totals;
+        if (current == null) {
+            refresh();
+            current = totals;
+        }
+        return current;
+    }
+
+    /** Appointments per doctor on each of the days from the given date, for doctors with any. */
+    List<DoctorLoad> getDoctorLoad(LocalDate from, int days) throws SQLException {
+        Totals current = current();
+        long first = from.toEpochDay();
+        Map<Integer, long[]> perDoctor = new TreeMap<>();
+        current.doctorDays.forEach((key, count) -> {
+            long day = (int) key;
+            if (day >= first && day < first + days) {
+                perDoctor.computeIfAbsent((int) (key >> 32), doctorId -> new long[days])[(int) (day - first)] += count;
+            }
+        });
+        List<DoctorLoad> load = new ArrayList<>(perDoctor.size());
+        for (Map.Entry<Integer, long[]> entry : perDoctor.entrySet()) {
+            DoctorInfo doctor = current.doctors.get(entry.getKey());
+            load.add(new DoctorLoad(entry.getKey(), doctor == null ? "Unknown" : doctor.name,
+                    doctor == null ? "Unknown" : doctor.specialization, entry.getValue()));
+        }
+        return load;
+    }
+
+    /** Appointments per specialization over the days from the given date, busiest first. */
+    List<Count> getSpecializationDemand(LocalDate from, int days) throws SQLException {
+        Map<String, Long> demand = new HashMap<>();
+        for (DoctorLoad doctor : getDoctorLoad(from, days)) {
+            demand.merge(doctor.getSpecialization(), doctor.getTotal(), Long::sum);
+        }
+        List<Count> counts = new ArrayList<>(demand.size());
+        for (Map.Entry<String, Long> entry : demand.entrySet()) {
+            counts.add(new Count(entry.getKey(), entry.getValue()));
+        }
+        counts.sort(Comparator.comparingLong(Count::getCount).reversed().thenComparing(Count::getLabel));
+        return counts;
+    }
+
+    /** Patient counts by age band, then by gender as entered (compared without case). */
+    Map<String, Map<String, Long>> getPatientsByAgeAndGender() throws SQLException {
+        Totals current = current();
+        Map<String, Map<String, Long>> table = new LinkedHashMap<>();
+        for (int band = 0; band < AGE_BANDS; band++) {
+            Map<String, Long> byGender = new TreeMap<>();
+            for (int gender = 0; gender < current.genders.size(); gender++) {
+                int code = gender * AGE_BANDS + band;
+                long count = code < current.patientsByGenderAndAge.length ? current.patientsByGenderAndAge[code] : 0;
+                if (count > 0) {
+                    byGender.put(current.genders.label(gender), count);
+                }
+            }
+            table.put(ageBandLabel(band), byGender);
+        }
+        return table;
+    }
+
+    /** The most frequently recorded conditions, most common first. */
+    List<Count> getTopConditions(int limit) throws SQLException {
+        Totals current = current();
+        long[] counts = current.conditionCounts;
+        // Min-heap of codes by count, holding the best limit seen so far
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, limit), Comparator.comparingLong(code -> counts[code]));
+        for (int code = 0; code < counts.length && limit > 0; code++) {
+            if (counts[code] == 0) {
+                continue;
+            }
+            if (top.size() < limit) {
+                top.add(code);
+            } else if (counts[code] > counts[top.peek()]) {
+                top.poll();
+                top.add(code);
+            }
+        }
+        List<Count> result = new ArrayList<>(top.size());
+        for (int code : top) {
+            result.add(new Count(current.conditions.label(code), counts[code]));
+        }
+        result.sort(Comparator.comparingLong(Count::getCount).reversed().thenComparing(Count::getLabel));
+        return result;
+    }
+
+    Stats getStats() {
+        Totals current = totals;
+        long[] rows = current == null ? new long[Source.values().length] : current.rows;
+        return new Stats(rows[Source.APPOINTMENTS.ordinal()], rows[Source.PATIENTS.ordinal()],
+                rows[Source.CONDITIONS.ordinal()], fullRefreshes, incrementalRefreshes,
+                current == null ? 0 : current.rowsRead, lastRefreshMillis);
+    }
+
+    /** The Monday on or before the given date. */
+    static LocalDate weekStart(LocalDate date) {
+        return date.minusDays(date.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+    }
+
+    /** Handles "java Healthcare report [week-start] [--days N] [--top N]". */
+    static void runReport(String[] args) throws SQLException, InvalidDateFormatException {
+        LocalDate from = weekStart(LocalDate.now());
+        int days = DEFAULT_DAYS;
+        int top = DEFAULT_TOP;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--days") && i + 1 < args.length) {
+                days = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--top") && i + 1 < args.length) {
+                top = Integer.parseInt(args[++i]);
+            } else if (!args[i].startsWith("--")) {
+                from = Validation.parseDate("week-start", args[i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (days < 1 || days > 366) {
+            throw new IllegalArgumentException("Days must be between 1 and 366");
+        }
+
+        Reports reports = DatabaseManager.getReports();
+        reports.refresh();
+        LocalDate to = from.plusDays(days - 1);
+        System.out.println("Report for " + from + " to " + to);
+
+        System.out.println();
+        System.out.println("Appointments per doctor per day");
+        StringBuilder header = new StringBuilder(String.format("  %-40s", "Doctor"));
+        for (int d = 0; d < days; d++) {
+            header.append(String.format(" %5s", from.plusDays(d).getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.ROOT)));
+        }
+        System.out.println(header.append("  Total"));
+        for (DoctorLoad doctor : reports.getDoctorLoad(from, days)) {
+            StringBuilder row = new StringBuilder(String.format("  %-40.40s",
+                    doctor.getDoctorId() + " " + doctor.getName() + " (" + doctor.getSpecialization() + ")"));
+            for (long count : doctor.perDay) {
+                row.append(String.format(" %5d", count));
+            }
+            System.out.println(row.append(String.format("  %5d", doctor.getTotal())));
+        }
+
+        System.out.println();
+        System.out.println("Demand by specialization");
+        for (Count count : reports.getSpecializationDemand(from, days)) {
+            System.out.println(String.format("  %-30s %8d", count.getLabel(), count.getCount()));
+        }
+
+        System.out.println();
+        System.out.println("Patients by age band and gender");
+        for (Map.Entry<String, Map<String, Long>> band : reports.getPatientsByAgeAndGender().entrySet()) {
+            System.out.println(String.format("  %-6s %s", band.getKey(), band.getValue()));
+        }
+
+        System.out.println();
+        System.out.println("Most common conditions");
+        int rank = 1;
+        for (Count count : reports.getTopConditions(top)) {
+            System.out.println(String.format("  %2d. %-40s %8d", rank++, count.getLabel(), count.getCount()));
+        }
+
+        System.out.println();
+        System.out.println("Reports: " + reports.getStats());
+    }
+}
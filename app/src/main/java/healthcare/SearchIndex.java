@@ -0,0 +1,627 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process search over patient names and conditions and doctor names and
+ * specializations.
+ *
+ * Each field is split into lower-case words that go into a character trie. Every
+ * trie node holds the sorted IDs of the entities that have the word ending there.
+ * A query matches an entity when every query word is the prefix of one of its
+ * words in that field, so "jo sm" finds "John Smith". The index is loaded from the
+ * database by {@link #rebuild()} at startup and kept current by DatabaseManager as
+ * rows are written. It is not a source of truth: if it is ever in doubt,
+ * rebuild it.
+ */
+class SearchIndex {
+
+    /** One search result; detail is the doctor's specialization and is null for patients. */
+    static final class Hit {
+        private final int id;
+        private final String name;
+        private final String detail;
+
+        Hit(int id, String name, String detail) {
+            this.id = id;
+            this.name = name;
+            this.detail = detail;
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return id + " " + name + (detail == null ? "" : " (" + detail + ")");
+        }
+    }
+
+    /** Size of the index and how long queries take. */
+    static final class Stats {
+        private final int patients;
+        private final int doctors;
+        private final long trieNodes;
+        private final long postings;
+        private final long estimatedBytes;
+        private final long queries;
+        private final double p99Millis;
+
+        Stats(int patients, int doctors, long trieNodes, long postings, long estimatedBytes, long queries, double p99Millis) {
+            this.patients = patients;
+            this.doctors = doctors;
+            this.trieNodes = trieNodes;
+            this.postings = postings;
+            this.estimatedBytes = estimatedBytes;
+            this.queries = queries;
+            this.p99Millis = p99Millis;
+        }
+
+        public int getPatients() { return patients; }
+        public int getDoctors() { return doctors; }
+        public long getTrieNodes() { return trieNodes; }
+        public long getPostings() { return postings; }
+        public long getEstimatedBytes() { return estimatedBytes; }
+        public long getQueries() { return queries; }
+        public double getP99Millis() { return p99Millis; }
+
+        @Override
+        public String toString() {
+            return String.format("patients=%d, doctors=%d, trieNodes=%d, postings=%d, estimatedMemory=%.1f MB, queries=%d, p99=%.3f ms",
+                    patients, doctors, trieNodes, postings, estimatedBytes / (1024.0 * 1024.0), queries, p99Millis);
+        }
+    }
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 1000;
+
+    // Rough JVM sizes with compressed references, used only for the memory estimate
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int MAP_ENTRY = 32 + 16; // HashMap.Node plus the boxed key
+
+    private static final String[] NO_WORDS = new String[0];
+
+    /** Words of one field, mapped to the IDs of the entities that use them. */
+    private static final class TokenTrie {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final int[] NO_IDS = new int[0];
+
+        private static final class Node {
+            // Children sorted by label
+            char[] labels = NO_LABELS;
+            Node[] children = NO_CHILDREN;
+            int childCount;
+            // Sorted IDs of the entities with a word ending at this node
+            int[] ids = NO_IDS;
+            int idCount;
+
+            Node child(char label) {
+                int i = Arrays.binarySearch(labels, 0, childCount, label);
+                return i >= 0 ? children[i] : null;
+            }
+
+            // Only called when the child does not exist yet
+            Node addChild(char label) {
+                int at = -Arrays.binarySearch(labels, 0, childCount, label) - 1;
+                if (childCount == labels.length) {
+                    int capacity = Math.max(2, childCount * 2);
+                    labels = Arrays.copyOf(labels, capacity);
+                    children = Arrays.copyOf(children, capacity);
+                }
+                System.arraycopy(labels, at, labels, at + 1, childCount - at);
+                System.arraycopy(children, at, children, at + 1, childCount - at);
+                Node node = new Node();
+                labels[at] = label;
+                children[at] = node;
+                childCount++;
+                return node;
+            }
+
+            void removeChild(char label) {
+                int i = Arrays.binarySearch(labels, 0, childCount, label);
+                if (i >= 0) {
+                    System.arraycopy(labels, i + 1, labels, i, childCount - i - 1);
+                    System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+                    childCount--;
+                    children[childCount] = null;
+                }
+            }
+
+            boolean addId(int id) {
+                int i = Arrays.binarySearch(ids, 0, idCount, id);
+                if (i >= 0) {
+                    return false;
+                }
+                int at = -i - 1;
+                if (idCount == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(1, idCount + (idCount >> 1) + 1));
+                }
+                System.arraycopy(ids, at, ids, at + 1, idCount - at);
+                ids[at] = id;
+                idCount++;
+                return true;
+            }
+
+            boolean removeId(int id) {
+                int i = Arrays.binarySearch(ids, 0, idCount, id);
+                if (i < 0) {
+                    return false;
+                }
+                System.arraycopy(ids, i + 1, ids, i, idCount - i - 1);
+                idCount--;
+                return true;
+            }
+
+            boolean isEmpty() {
+                return idCount == 0 && childCount == 0;
+            }
+        }
+
+        /** Called with each ID under a node; return false to stop the walk. */
+        interface IdVisitor {
+            boolean visit(int id);
+        }
+
+        private final Node root = new Node();
+        private long nodes = 1;
+        private long postings;
+
+        void add(String word, int id) {
+            Node node = root;
+            for (int i = 0; i < word.length(); i++) {
+                Node next = node.child(word.charAt(i));
+                if (next == null) {
+                    next = node.addChild(word.charAt(i));
+                    nodes++;
+                }
+                node = next;
+            }
+            if (node.addId(id)) {
+                postings++;
+            }
+        }
+
+        void remove(String word, int id) {
+            remove(root, word, 0, id);
+        }
+
+        // Returns true when the node is left empty so the caller can unlink it
+        private boolean remove(Node node, String word, int depth, int id) {
+            if (depth == word.length()) {
+                if (node.removeId(id)) {
+                    postings--;
+                }
+                return node.isEmpty();
+            }
+            char label = word.charAt(depth);
+            Node child = node.child(label);
+            if (child != null && remove(child, word, depth + 1, id)) {
+                node.removeChild(label);
+                nodes--;
+            }
+            return node.isEmpty();
+        }
+
+        Node find(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            return node;
+        }
+
+        // Depth first, shorter words before longer ones and siblings in character order
+        static boolean walk(Node node, IdVisitor visitor) {
+            for (int i = 0; i < node.idCount; i++) {
+                if (!visitor.visit(node.ids[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                if (!walk(node.children[i], visitor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long estimateBytes() {
+            return estimateBytes(root);
+        }
+
+        private static long estimateBytes(Node node) {
+            long bytes = align(OBJECT_HEADER + 3 * REFERENCE + 8)
+                    + (node.labels.length == 0 ? 0 : align(ARRAY_HEADER + 2L * node.labels.length))
+                    + (node.children.length == 0 ? 0 : align(ARRAY_HEADER + (long) REFERENCE * node.children.length))
+                    + (node.ids.length == 0 ? 0 : align(ARRAY_HEADER + 4L * node.ids.length));
+            for (int i = 0; i < node.childCount; i++) {
+                bytes += estimateBytes(node.children[i]);
+            }
+            return bytes;
+        }
+    }
+
+    private static final class PatientEntry {
+        final String name;
+        final String[] nameWords;
+        String[] conditionWords = NO_WORDS;
+
+        PatientEntry(String name) {
+            this.name = name;
+            this.nameWords = words(name);
+        }
+    }
+
+    private static final class DoctorEntry {
+        final String name;
+        final String specialization;
+        final String[] nameWords;
+        final String[] specializationWords;
+
+        DoctorEntry(String name, String specialization) {
+            this.name = name;
+            this.specialization = specialization;
+            this.nameWords = words(name);
+            this.specializationWords = words(specialization);
+        }
+    }
+
+    /** One complete copy of the index; replaced as a whole by a rebuild. */
+    private static final class Tables {
+        final TokenTrie patientNames = new TokenTrie();
+        final TokenTrie patientConditions = new TokenTrie();
+        final TokenTrie doctorNames = new TokenTrie();
+        final TokenTrie doctorSpecializations = new TokenTrie();
+        final Map<Integer, PatientEntry> patients = new HashMap<>();
+        final Map<Integer, DoctorEntry> doctors = new HashMap<>();
+
+        void addPatient(int id, String name, List<String> conditions) {
+            PatientEntry previous = patients.get(id);
+            if (previous != null) {
+                for (String word : previous.nameWords) {
+                    patientNames.remove(word, id);
+                }
+            }
+            PatientEntry entry = new PatientEntry(name);
+            if (previous != null) {
+                entry.conditionWords = previous.conditionWords;
+            }
+            patients.put(id, entry);
+            for (String word : entry.nameWords) {
+                patientNames.add(word, id);
+            }
+            for (String condition : conditions) {
+                addCondition(id, condition);
+            }
+        }
+
+        void addCondition(int id, String condition) {
+            PatientEntry entry = patients.get(id);
+            if (entry == null) {
+                return;
+            }
+            for (String word : words(condition)) {
+                if (!contains(entry.conditionWords, word)) {
+                    entry.conditionWords = Arrays.copyOf(entry.conditionWords, entry.conditionWords.length + 1);
+                    entry.conditionWords[entry.conditionWords.length - 1] = word;
+                    patientConditions.add(word, id);
+                }
+            }
+        }
+
+        void addDoctor(int id, String name, String specialization) {
+            removeDoctor(id);
+            DoctorEntry entry = new DoctorEntry(name, specialization);
+            doctors.put(id, entry);
+            for (String word : entry.nameWords) {
+                doctorNames.add(word, id);
+            }
+            for (String word : entry.specializationWords) {
+                doctorSpecializations.add(word, id);
+            }
+        }
+
+        void removeDoctor(int id) {
+            DoctorEntry entry = doctors.remove(id);
+            if (entry == null) {
+                return;
+            }
+            for (String word : entry.nameWords) {
+                doctorNames.remove(word, id);
+            }
+            for (String word : entry.specializationWords) {
+                doctorSpecializations.remove(word, id);
+            }
+        }
+
+        long estimateBytes() {
+            long bytes = patientNames.estimateBytes() + patientConditions.estimateBytes()
+                    + doctorNames.estimateBytes() + doctorSpecializations.estimateBytes();
+            for (PatientEntry entry : patients.values()) {
+                bytes += MAP_ENTRY + align(OBJECT_HEADER + 3 * REFERENCE) + stringBytes(entry.name)
+                        + wordsBytes(entry.nameWords) + wordsBytes(entry.conditionWords);
+            }
+            for (DoctorEntry entry : doctors.values()) {
+                bytes += MAP_ENTRY + align(OBJECT_HEADER + 4 * REFERENCE) + stringBytes(entry.name)
+                        + stringBytes(entry.specialization) + wordsBytes(entry.nameWords) + wordsBytes(entry.specializationWords);
+            }
+            // The two maps' bucket arrays
+            bytes += align(ARRAY_HEADER + (long) REFERENCE * tableSize(patients.size()))
+                    + align(ARRAY_HEADER + (long) REFERENCE * tableSize(doctors.size()));
+            return bytes;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LatencyHistogram queryLatency = new LatencyHistogram();
+    // Guarded by lock
+    private Tables tables = new Tables();
+    // Changes made while a rebuild is reading the tables, replayed onto the new copy; guarded by lock
+    private List<Consumer<Tables>> changesDuringRebuild;
+
+    /** Reloads the whole index from the database and swaps it in. */
+    synchronized void rebuild() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Tables fresh = new Tables();
+        try {
+            load(fresh);
+        } catch (SQLException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Consumer<Tables> change : changesDuringRebuild) {
+                change.accept(fresh);
+            }
+            changesDuringRebuild = null;
+            tables = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void load(Tables fresh) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT patient_id, name FROM patients ORDER BY patient_id")) {
+                while (rs.next()) {
+                    fresh.addPatient(rs.getInt("patient_id"), rs.getString("name"), Collections.emptyList());
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT patient_id, condition_text FROM medical_conditions ORDER BY patient_id, entry_id")) {
+                while (rs.next()) {
+                    fresh.addCondition(rs.getInt("patient_id"), rs.getString("condition_text"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT doctor_id, name, specialization FROM doctors ORDER BY doctor_id")) {
+                while (rs.next()) {
+                    fresh.addDoctor(rs.getInt("doctor_id"), rs.getString("name"), rs.getString("specialization"));
+                }
+            }
+        }
+    }
+
+    // Hooks called by DatabaseManager once a write has committed
+
+    void patientSaved(int patientId, String name, List<String> conditions) {
+        List<String> copy = new ArrayList<>(conditions);
+        apply(t -> t.addPatient(patientId, name, copy));
+    }
+
+    void conditionAdded(int patientId, String condition) {
+        apply(t -> t.addCondition(patientId, condition));
+    }
+
+    void doctorSaved(int doctorId, String name, String specialization) {
+        apply(t -> t.addDoctor(doctorId, name, specialization));
+    }
+
+    void doctorDeleted(int doctorId) {
+        apply(t -> t.removeDoctor(doctorId));
+    }
+
+    private void apply(Consumer<Tables> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(tables);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Hit> findPatientsByName(String query, int limit) {
+        return find(query, limit, false, true);
+    }
+
+    public List<Hit> findPatientsByCondition(String query, int limit) {
+        return find(query, limit, false, false);
+    }
+
+    public List<Hit> findDoctorsByName(String query, int limit) {
+        return find(query, limit, true, true);
+    }
+
+    public List<Hit> findDoctorsBySpecialization(String query, int limit) {
+        return find(query, limit, true, false);
+    }
+
+    private List<Hit> find(String query, int limit, boolean doctors, boolean byName) {
+        long start = System.nanoTime();
+        String[] terms = words(query);
+        int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<Hit> hits = new ArrayList<>(Math.min(max, 64));
+        if (terms.length == 0) {
+            return hits;
+        }
+        // Walk the longest term, which usually has the fewest matches, and check the rest per entity
+        int longest = 0;
+        for (int i = 1; i < terms.length; i++) {
+            if (terms[i].length() > terms[longest].length()) {
+                longest = i;
+            }
+        }
+        int driver = longest;
+        lock.readLock().lock();
+        try {
+            Tables t = tables;
+            TokenTrie trie = doctors ? (byName ? t.doctorNames : t.doctorSpecializations)
+                    : (byName ? t.patientNames : t.patientConditions);
+            TokenTrie.Node node = trie.find(terms[driver]);
+            if (node != null) {
+                Set<Integer> seen = new HashSet<>();
+                TokenTrie.walk(node, id -> {
+                    if (!seen.add(id)) {
+                        return true;
+                    }
+                    if (doctors) {
+                        DoctorEntry entry = t.doctors.get(id);
+                        if (entry != null && matchesAll(terms, driver, byName ? entry.nameWords : entry.specializationWords)) {
+                            hits.add(new Hit(id, entry.name, entry.specialization));
+                        }
+                    } else {
+                        PatientEntry entry = t.patients.get(id);
+                        if (entry != null && matchesAll(terms, driver, byName ? entry.nameWords : entry.conditionWords)) {
+                            hits.add(new Hit(id, entry.name, null));
+                        }
+                    }
+                    return hits.size() < max;
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+            queryLatency.record(System.nanoTime() - start);
+        }
+        return hits;
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            Tables t = tables;
+            TokenTrie[] tries = { t.patientNames, t.patientConditions, t.doctorNames, t.doctorSpecializations };
+            long nodes = 0;
+            long postings = 0;
+            for (TokenTrie trie : tries) {
+                nodes += trie.nodes;
+                postings += trie.postings;
+            }
+            return new Stats(t.patients.size(), t.doctors.size(), nodes, postings, t.estimateBytes(),
+                    queryLatency.getCount(), queryLatency.getPercentileMillis(99));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    LatencyHistogram getQueryLatency() {
+        return queryLatency;
+    }
+
+    // The walked term matched already; every other term must prefix one of the entity's words
+    private static boolean matchesAll(String[] terms, int walked, String[] entityWords) {
+        for (int i = 0; i < terms.length; i++) {
+            if (i != walked && !anyStartsWith(entityWords, terms[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean anyStartsWith(String[] entityWords, String prefix) {
+        for (String word : entityWords) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(String[] words, String word) {
+        for (String w : words) {
+            if (w.equals(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Lower-case runs of letters and digits; everything else separates words. */
+    static String[] words(String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_WORDS;
+        }
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words.toArray(NO_WORDS);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long stringBytes(String s) {
+        // String object plus its Latin-1 byte array
+        return s == null ? 0 : align(OBJECT_HEADER + REFERENCE + 12) + align(ARRAY_HEADER + s.length());
+    }
+
+    private static long wordsBytes(String[] words) {
+        if (words.length == 0) {
+            return 0;
+        }
+        long bytes = align(ARRAY_HEADER + (long) REFERENCE * words.length);
+        for (String word : words) {
+            bytes += stringBytes(word);
+        }
+        return bytes;
+    }
+
+    private static int tableSize(int entries) {
+        int size = 16;
+        while (size * 3 / 4 < entries) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
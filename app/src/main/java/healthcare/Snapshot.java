@@ -0,0 +1,837 @@
+package healthcare;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshots of the patients, doctors, appointments and medical_conditions
+ * tables, for standing up a new instance without replaying every row through the
+ * insert paths.
+ *
+ * A snapshot file is a header, then each table as a run of row groups, then a
+ * footer listing the tables, their columns and where each group starts. Inside a
+ * group the values are stored column by column: fixed-width ints, longs and dates,
+ * and strings as a column of byte lengths followed by the UTF-8 bytes. Every group
+ * and the footer carry a CRC32. An import checks all of them before it writes
+ * anything, so a damaged or truncated file is refused up front.
+ *
+ * Import maps each group straight from the file and inserts it as one JDBC batch
+ * and one commit. Groups are spread over a pool of workers, each with its own
+ * connection. Patients and doctors load first and appointments and conditions after
+ * them, so foreign keys always find their parent. The target tables must be empty.
+ * With MySQL, add rewriteBatchedStatements=true to healthcare.db.url so each batch
+ * reaches the server as multi-row inserts.
+ */
+final class Snapshot {
+
+    enum ColumnType {
+        INT(4),
+        // NULL stored as Integer.MIN_VALUE
+        NULLABLE_INT(4),
+        LONG(8),
+        // Days since 1970-01-01
+        DATE(4),
+        // Microseconds since the epoch, the finest precision MySQL keeps; NULL stored as Long.MIN_VALUE
+        TIMESTAMP(8),
+        STRING(-1);
+
+        final int width;
+
+        ColumnType(int width) {
+            this.width = width;
+        }
+    }
+
+    static final class Column {
+        final String name;
+        final ColumnType type;
+
+        Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    /** The tables in a snapshot, in file order. The first column is the primary key. */
+    enum Table {
+        PATIENTS("patients", 0,
+                new Column("patient_id", ColumnType.INT),
+                new Column("name", ColumnType.STRING),
+                new Column("age", ColumnType.INT),
+                new Column("gender", ColumnType.STRING),
+                new Column("contact_number", ColumnType.STRING)),
+        DOCTORS("doctors", 0,
+                new Column("doctor_id", ColumnType.INT),
+                new Column("name", ColumnType.STRING),
+                new Column("specialization", ColumnType.STRING),
+                new Column("contact_number", ColumnType.STRING)),
+        APPOINTMENTS("appointments", 1,
+                new Column("appointment_id", ColumnType.INT),
+                new Column("patient_id", ColumnType.INT),
+                new Column("doctor_id", ColumnType.INT),
+                new Column("appointment_date", ColumnType.DATE),
+                new Column("slot_index", ColumnType.NULLABLE_INT)),
+        MEDICAL_CONDITIONS("medical_conditions", 1,
+                new Column("entry_id", ColumnType.LONG),
+                new Column("patient_id", ColumnType.INT),
+                new Column("condition_text", ColumnType.STRING),
+                new Column("recorded_at", ColumnType.TIMESTAMP));
+
+        final String tableName;
+        // Tables in a later phase reference tables in an earlier one
+        final int phase;
+        final Column[] columns;
+
+        Table(String tableName, int phase, Column... columns) {
+            this.tableName = tableName;
+            this.phase = phase;
+            this.columns = columns;
+        }
+
+        private String columnList() {
+            StringBuilder list = new StringBuilder();
+            for (Column column : columns) {
+                list.append(list.length() == 0 ? "" : ", ").append(column.name);
+            }
+            return list.toString();
+        }
+
+        String selectSql() {
+            String key = columns[0].name;
+            return "SELECT " + columnList() + " FROM " + tableName + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?";
+        }
+
+        String insertSql() {
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                values.append(i == 0 ? "?" : ", ?");
+            }
+            return "INSERT INTO " + tableName + " (" + columnList() + ") VALUES (" + values + ")";
+        }
+    }
+
+    /** Rows per table, file size and time taken by an export, import or verify. */
+    static final class Report {
+        private final String action;
+        private final Map<Table, Long> rows;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        Report(String action, Map<Table, Long> rows, long bytes, long elapsedNanos) {
+            this.action = action;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows(Table table) {
+            return rows.getOrDefault(table, 0L);
+        }
+
+        public long getTotalRows() {
+            long total = 0;
+            for (long count : rows.values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getBytes() { return bytes; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : getTotalRows() * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder tables = new StringBuilder();
+            for (Map.Entry<Table, Long> entry : rows.entrySet()) {
+                tables.append(tables.length() == 0 ? "" : ", ").append(entry.getKey().tableName).append(' ').append(entry.getValue());
+            }
+            return String.format("%s %s (%.1f MB) in %.2f s (%.0f rows/s)", action, tables, bytes / 1_048_576.0,
+                    elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+        }
+    }
+
+    private static final int MAGIC = 0x48435350; // "HCSP"
+    private static final int VERSION = 1;
+    // magic, version, created-at millis
+    private static final int HEADER_BYTES = 16;
+    // footer offset, footer length, footer CRC, magic
+    private static final int TRAILER_BYTES = 20;
+    // row count, payload length, payload CRC
+    private static final int GROUP_HEADER_BYTES = 12;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    static final int DEFAULT_GROUP_ROWS = 50_000;
+    static final int DEFAULT_THREADS = 4;
+    // Rows per executeBatch within a group, to bound what the driver buffers
+    private static final int BATCH_ROWS = 2_000;
+
+    private static final Metrics.Operation EXPORT = Metrics.operation("snapshot.export");
+    private static final Metrics.Operation IMPORT_GROUP = Metrics.operation("snapshot.importGroup");
+
+    private Snapshot() {
+    }
+
+    // One row group in memory: an int[], long[] or String[] per column
+    private static final class Group {
+        final Table table;
+        final Object[] values;
+        int rows;
+
+        Group(Table table, int capacity) {
+            this.table = table;
+            this.values = new Object[table.columns.length];
+            for (int c = 0; c < values.length; c++) {
+                switch (table.columns[c].type) {
+                    case LONG:
+                    case TIMESTAMP:
+                        values[c] = new long[capacity];
+                        break;
+                    case STRING:
+                        values[c] = new String[capacity];
+                        break;
+                    default:
+                        values[c] = new int[capacity];
+                }
+            }
+        }
+
+        long key(int row) {
+            Object keys = values[0];
+            return keys instanceof long[] ? ((long[]) keys)[row] : ((int[]) keys)[row];
+        }
+
+        void read(ResultSet rs) throws SQLException {
+            for (int c = 0; c < values.length; c++) {
+                int index = c + 1;
+                switch (table.columns[c].type) {
+                    case INT:
+                        ((int[]) values[c])[rows] = rs.getInt(index);
+                        break;
+                    case NULLABLE_INT: {
+                        int value = rs.getInt(index);
+                        ((int[]) values[c])[rows] = rs.wasNull() ? NULL_INT : value;
+                        break;
+                    }
+                    case LONG:
+                        ((long[]) values[c])[rows] = rs.getLong(index);
+                        break;
+                    case DATE: {
+                        java.sql.Date date = rs.getDate(index);
+                        ((int[]) values[c])[rows] = date == null ? NULL_INT : (int) date.toLocalDate().toEpochDay();
+                        break;
+                    }
+                    case TIMESTAMP: {
+                        Timestamp timestamp = rs.getTimestamp(index);
+                        ((long[]) values[c])[rows] = timestamp == null ? NULL_LONG
+                                : Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+                        break;
+                    }
+                    case STRING:
+                        ((String[]) values[c])[rows] = rs.getString(index);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unhandled column type " + table.columns[c].type);
+                }
+            }
+            rows++;
+        }
+
+        void bind(PreparedStatement pstmt, int row) throws SQLException {
+            for (int c = 0; c < values.length; c++) {
+                int index = c + 1;
+                switch (table.columns[c].type) {
+                    case INT:
+                        pstmt.setInt(index, ((int[]) values[c])[row]);
+                        break;
+                    case NULLABLE_INT: {
+                        int value = ((int[]) values[c])[row];
+                        if (value == NULL_INT) {
+                            pstmt.setNull(index, java.sql.Types.INTEGER);
+                        } else {
+                            pstmt.setInt(index, value);
+                        }
+                        break;
+                    }
+                    case LONG:
+                        pstmt.setLong(index, ((long[]) values[c])[row]);
+                        break;
+                    case DATE: {
+                        int day = ((int[]) values[c])[row];
+                        if (day == NULL_INT) {
+                            pstmt.setNull(index, java.sql.Types.DATE);
+                        } else {
+                            pstmt.setDate(index, java.sql.Date.valueOf(LocalDate.ofEpochDay(day)));
+                        }
+                        break;
+                    }
+                    case TIMESTAMP: {
+                        long micros = ((long[]) values[c])[row];
+                        if (micros == NULL_LONG) {
+                            pstmt.setNull(index, java.sql.Types.TIMESTAMP);
+                        } else {
+                            Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000L);
+                            timestamp.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+                            pstmt.setTimestamp(index, timestamp);
+                        }
+                        break;
+                    }
+                    case STRING:
+                        pstmt.setString(index, ((String[]) values[c])[row]);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unhandled column type " + table.columns[c].type);
+                }
+            }
+        }
+
+        // The group as it is stored: header, then each column's values in turn
+        ByteBuffer encode() {
+            byte[][][] strings = new byte[values.length][][];
+            int payload = 0;
+            for (int c = 0; c < values.length; c++) {
+                ColumnType type = table.columns[c].type;
+                if (type == ColumnType.STRING) {
+                    String[] column = (String[]) values[c];
+                    strings[c] = new byte[rows][];
+                    payload += rows * 4;
+                    for (int r = 0; r < rows; r++) {
+                        if (column[r] != null) {
+                            strings[c][r] = column[r].getBytes(StandardCharsets.UTF_8);
+                            payload += strings[c][r].length;
+                        }
+                    }
+                } else {
+                    payload += rows * type.width;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(GROUP_HEADER_BYTES + payload);
+            buffer.position(GROUP_HEADER_BYTES);
+            for (int c = 0; c < values.length; c++) {
+                switch (table.columns[c].type) {
+                    case LONG:
+                    case TIMESTAMP: {
+                        long[] column = (long[]) values[c];
+                        for (int r = 0; r < rows; r++) {
+                            buffer.putLong(column[r]);
+                        }
+                        break;
+                    }
+                    case STRING: {
+                        for (int r = 0; r < rows; r++) {
+                            buffer.putInt(strings[c][r] == null ? -1 : strings[c][r].length);
+                        }
+                        for (int r = 0; r < rows; r++) {
+                            if (strings[c][r] != null) {
+                                buffer.put(strings[c][r]);
+                            }
+                        }
+                        break;
+                    }
+                    default: {
+                        int[] column = (int[]) values[c];
+                        for (int r = 0; r < rows; r++) {
+                            buffer.putInt(column[r]);
+                        }
+                    }
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), GROUP_HEADER_BYTES, payload);
+            buffer.putInt(0, rows).putInt(4, payload).putInt(8, (int) crc.getValue());
+            buffer.flip();
+            return buffer;
+        }
+
+        static Group decode(Table table, int rows, ByteBuffer payload) throws IOException {
+            Group group = new Group(table, rows);
+            byte[] scratch = new byte[256];
+            try {
+                for (int c = 0; c < group.values.length; c++) {
+                    switch (table.columns[c].type) {
+                        case LONG:
+                        case TIMESTAMP: {
+                            long[] column = (long[]) group.values[c];
+                            for (int r = 0; r < rows; r++) {
+                                column[r] = payload.getLong();
+                            }
+                            break;
+                        }
+                        case STRING: {
+                            String[] column = (String[]) group.values[c];
+                            int[] lengths = new int[rows];
+                            for (int r = 0; r < rows; r++) {
+                                lengths[r] = payload.getInt();
+                            }
+                            for (int r = 0; r < rows; r++) {
+                                int length = lengths[r];
+                                if (length < 0) {
+                                    continue;
+                                }
+                                if (length > scratch.length) {
+                                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                                }
+                                payload.get(scratch, 0, length);
+                                column[r] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                            }
+                            break;
+                        }
+                        default: {
+                            int[] column = (int[]) group.values[c];
+                            for (int r = 0; r < rows; r++) {
+                                column[r] = payload.getInt();
+                            }
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                // A payload that passed its CRC but does not fit the columns was written by something else
+                throw new IOException("Malformed " + table.tableName + " row group", e);
+            }
+            if (payload.hasRemaining()) {
+                throw new IOException("Malformed " + table.tableName + " row group: " + payload.remaining() + " byte(s) left over");
+            }
+            group.rows = rows;
+            return group;
+        }
+    }
+
+    // Where one table's groups are in the file
+    private static final class TableEntry {
+        final long rows;
+        final long[] groupOffsets;
+
+        TableEntry(long rows, long[] groupOffsets) {
+            this.rows = rows;
+            this.groupOffsets = groupOffsets;
+        }
+    }
+
+    /**
+     * Writes every table to the file. All tables are read in one repeatable-read
+     * transaction, so the snapshot is consistent across them. The file only appears
+     * under its final name once it is complete.
+     */
+    static Report export(Path file, int groupRows) throws SQLException, IOException {
+        if (groupRows < 1) {
+            throw new IllegalArgumentException("Rows per group must be at least 1");
+        }
+        long start = System.nanoTime();
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Map<Table, Long> rows = new EnumMap<>(Table.class);
+        try (Connection conn = DatabaseManager.getConnection();
+             FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            int isolation = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+                header.flip();
+                writeFully(out, header);
+
+                Map<Table, TableEntry> directory = new EnumMap<>(Table.class);
+                for (Table table : Table.values()) {
+                    List<Long> offsets = new ArrayList<>();
+                    long count = exportTable(conn, table, out, groupRows, offsets);
+                    long[] groupOffsets = new long[offsets.size()];
+                    for (int i = 0; i < groupOffsets.length; i++) {
+                        groupOffsets[i] = offsets.get(i);
+                    }
+                    directory.put(table, new TableEntry(count, groupOffsets));
+                    rows.put(table, count);
+                }
+                conn.commit();
+                writeFooter(out, directory);
+                out.force(true);
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                EXPORT.failed(e);
+                throw e;
+            } finally {
+                conn.setTransactionIsolation(isolation);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        } finally {
+            EXPORT.finish(start);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Report("Exported", rows, Files.size(file), System.nanoTime() - start);
+    }
+
+    // Keyset pages in primary key order; each page becomes one group
+    private static long exportTable(Connection conn, Table table, FileChannel out, int groupRows, List<Long> offsets)
+            throws SQLException, IOException {
+        long rows = 0;
+        long afterKey = Long.MIN_VALUE;
+        try (PreparedStatement pstmt = conn.prepareStatement(table.selectSql())) {
+            while (true) {
+                pstmt.setLong(1, afterKey);
+                pstmt.setInt(2, groupRows);
+                Group group = new Group(table, groupRows);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        group.read(rs);
+                    }
+                }
+                if (group.rows == 0) {
+                    return rows;
+                }
+                offsets.add(out.position());
+                writeFully(out, group.encode());
+                rows += group.rows;
+                if (group.rows < groupRows) {
+                    return rows;
+                }
+                afterKey = group.key(group.rows - 1);
+            }
+        }
+    }
+
+    private static void writeFooter(FileChannel out, Map<Table, TableEntry> directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream footer = new DataOutputStream(bytes)) {
+            footer.writeInt(directory.size());
+            for (Map.Entry<Table, TableEntry> entry : directory.entrySet()) {
+                Table table = entry.getKey();
+                footer.writeUTF(table.tableName);
+                footer.writeByte(table.columns.length);
+                for (Column column : table.columns) {
+                    footer.writeUTF(column.name);
+                    footer.writeByte(column.type.ordinal());
+                }
+                footer.writeLong(entry.getValue().rows);
+                footer.writeInt(entry.getValue().groupOffsets.length);
+                for (long offset : entry.getValue().groupOffsets) {
+                    footer.writeLong(offset);
+                }
+            }
+        }
+        byte[] footer = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(footer);
+        long footerOffset = out.position();
+        writeFully(out, ByteBuffer.wrap(footer));
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES)
+                .putLong(footerOffset).putInt(footer.length).putInt((int) crc.getValue()).putInt(MAGIC);
+        trailer.flip();
+        writeFully(out, trailer);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    // Checks the header, trailer and footer CRC, and that the columns are the ones this version knows
+    private static Map<Table, TableEntry> readDirectory(FileChannel in, Path file) throws IOException {
+        long size = in.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException(file + " is too short to be a snapshot");
+        }
+        ByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(file + " is snapshot version " + version + "; this build reads version " + VERSION);
+        }
+        ByteBuffer trailer = in.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_BYTES, TRAILER_BYTES);
+        long footerOffset = trailer.getLong();
+        int footerLength = trailer.getInt();
+        int footerCrc = trailer.getInt();
+        if (trailer.getInt() != MAGIC || footerOffset < HEADER_BYTES || footerLength < 0
+                || footerOffset + footerLength != size - TRAILER_BYTES) {
+            throw new IOException(file + " is truncated or has a damaged trailer");
+        }
+        byte[] footer = new byte[footerLength];
+        in.map(FileChannel.MapMode.READ_ONLY, footerOffset, footerLength).get(footer);
+        CRC32 crc = new CRC32();
+        crc.update(footer);
+        if ((int) crc.getValue() != footerCrc) {
+            throw new IOException(file + " has a damaged footer (checksum mismatch)");
+        }
+
+        Map<Table, TableEntry> directory = new EnumMap<>(Table.class);
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(footer))) {
+            int tables = data.readInt();
+            for (int t = 0; t < tables; t++) {
+                String name = data.readUTF();
+                Table table = tableNamed(name);
+                int columns = data.readUnsignedByte();
+                boolean matches = columns == table.columns.length;
+                for (int c = 0; c < columns; c++) {
+                    String column = data.readUTF();
+                    int type = data.readUnsignedByte();
+                    matches &= c < table.columns.length && table.columns[c].name.equals(column)
+                            && table.columns[c].type.ordinal() == type;
+                }
+                if (!matches) {
+                    throw new IOException("Columns of " + name + " in " + file + " do not match snapshot version " + VERSION);
+                }
+                long rows = data.readLong();
+                long[] offsets = new long[data.readInt()];
+                for (int g = 0; g < offsets.length; g++) {
+                    offsets[g] = data.readLong();
+                    if (offsets[g] < HEADER_BYTES || offsets[g] + GROUP_HEADER_BYTES > footerOffset) {
+                        throw new IOException("Row group of " + name + " in " + file + " points outside the data");
+                    }
+                }
+                directory.put(table, new TableEntry(rows, offsets));
+            }
+        }
+        return directory;
+    }
+
+    private static Table tableNamed(String name) throws IOException {
+        for (Table table : Table.values()) {
+            if (table.tableName.equals(name)) {
+                return table;
+            }
+        }
+        throw new IOException("Unknown table in snapshot: " + name);
+    }
+
+    // Maps one group and checks its CRC; the payload is positioned at its first byte
+    private static MappedByteBuffer mapGroup(FileChannel in, Table table, long offset, int[] rowsOut) throws IOException {
+        ByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, offset, GROUP_HEADER_BYTES);
+        int rows = header.getInt();
+        int length = header.getInt();
+        int expectedCrc = header.getInt();
+        if (rows < 0 || length < 0 || offset + GROUP_HEADER_BYTES + length > in.size()) {
+            throw new IOException("Damaged " + table.tableName + " row group at offset " + offset);
+        }
+        MappedByteBuffer payload = in.map(FileChannel.MapMode.READ_ONLY, offset + GROUP_HEADER_BYTES, length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Damaged " + table.tableName + " row group at offset " + offset + " (checksum mismatch)");
+        }
+        payload.rewind();
+        rowsOut[0] = rows;
+        return payload;
+    }
+
+    /** Checks every checksum and decodes every group without touching the database. */
+    static Report verify(Path file) throws IOException {
+        long start = System.nanoTime();
+        Map<Table, Long> rows = new EnumMap<>(Table.class);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            Map<Table, TableEntry> directory = readDirectory(in, file);
+            int[] groupRows = new int[1];
+            for (Map.Entry<Table, TableEntry> entry : directory.entrySet()) {
+                Table table = entry.getKey();
+                long count = 0;
+                for (long offset : entry.getValue().groupOffsets) {
+                    MappedByteBuffer payload = mapGroup(in, table, offset, groupRows);
+                    count += Group.decode(table, groupRows[0], payload).rows;
+                }
+                if (count != entry.getValue().rows) {
+                    throw new IOException(table.tableName + " has " + count + " rows in its groups but the footer says "
+                            + entry.getValue().rows);
+                }
+                rows.put(table, count);
+            }
+            return new Report("Verified", rows, in.size(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Verifies the file, then loads it into empty tables with the given number of
+     * worker threads. If a group fails, the groups already committed stay in the
+     * database. Clear the tables before trying again.
+     */
+    static Report importFile(Path file, int threads) throws SQLException, IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        long start = System.nanoTime();
+        verify(file);
+        requireEmptyTables();
+
+        Map<Table, Long> rows = new EnumMap<>(Table.class);
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "snapshot-import-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            Map<Table, TableEntry> directory = readDirectory(in, file);
+            for (int phase = 0; phase <= 1; phase++) {
+                Map<Table, AtomicLong> loaded = new EnumMap<>(Table.class);
+                List<Future<?>> pending = new ArrayList<>();
+                for (Map.Entry<Table, TableEntry> entry : directory.entrySet()) {
+                    Table table = entry.getKey();
+                    if (table.phase != phase) {
+                        continue;
+                    }
+                    AtomicLong count = new AtomicLong();
+                    loaded.put(table, count);
+                    for (long offset : entry.getValue().groupOffsets) {
+                        pending.add(workers.submit(() -> {
+                            count.addAndGet(importGroup(in, table, offset));
+                            return null;
+                        }));
+                    }
+                }
+                awaitAll(pending);
+                for (Map.Entry<Table, AtomicLong> entry : loaded.entrySet()) {
+                    rows.put(entry.getKey(), entry.getValue().get());
+                }
+            }
+            // Imported rows skip the per-row search index and report hooks
+            DatabaseManager.getReports().invalidate();
+            DatabaseManager.rebuildSearchIndex();
+            return new Report("Imported", rows, in.size(), System.nanoTime() - start);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static void requireEmptyTables() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            for (Table table : Table.values()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table.tableName + " LIMIT 1")) {
+                    if (rs.next()) {
+                        throw new IllegalStateException("Table " + table.tableName + " is not empty; a snapshot can only be imported into empty tables");
+                    }
+                }
+            }
+        }
+    }
+
+    private static int importGroup(FileChannel in, Table table, long offset) throws IOException, SQLException {
+        long start = System.nanoTime();
+        int[] groupRows = new int[1];
+        try {
+            MappedByteBuffer payload = mapGroup(in, table, offset, groupRows);
+            Group group = Group.decode(table, groupRows[0], payload);
+            try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(table.insertSql())) {
+                conn.setAutoCommit(false);
+                try {
+                    for (int row = 0; row < group.rows; row++) {
+                        group.bind(pstmt, row);
+                        pstmt.addBatch();
+                        if ((row + 1) % BATCH_ROWS == 0) {
+                            pstmt.executeBatch();
+                        }
+                    }
+                    pstmt.executeBatch();
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            return group.rows;
+        } catch (SQLException | IOException | RuntimeException e) {
+            IMPORT_GROUP.failed(e);
+            throw e;
+        } finally {
+            IMPORT_GROUP.finish(start);
+        }
+    }
+
+    // Waits for every task; the first failure cancels the rest and is rethrown as it was
+    private static void awaitAll(List<Future<?>> pending) throws SQLException, IOException {
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        }
+    }
+
+    /** Handles "java Healthcare snapshot <export|import|verify> <file> [--threads N] [--group-rows N]". */
+    static void runSnapshot(String[] args) throws IOException, SQLException {
+        if (args.length < 3) {
+            System.out.println("Usage: java Healthcare snapshot <export|import|verify> <file> [--threads N] [--group-rows N]");
+            return;
+        }
+        Path file = Paths.get(args[2]);
+        int threads = DEFAULT_THREADS;
+        int groupRows = DEFAULT_GROUP_ROWS;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--group-rows") && i + 1 < args.length) {
+                groupRows = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        switch (args[1].toLowerCase(Locale.ROOT)) {
+            case "export":
+                System.out.println(export(file, groupRows));
+                break;
+            case "import":
+                System.out.println(importFile(file, threads));
+                break;
+            case "verify":
+                System.out.println(verify(file));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown snapshot action '" + args[1] + "', expected export, import or verify");
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package healthcare;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one physical connection, keyed by SQL text.
+ *
+ * A statement is prepared the first time its SQL is seen on the connection and
+ * handed out again on later prepareStatement(sql) calls. Closing the statement
+ * the caller received only resets it, so the driver does not parse the same SQL
+ * over and over. The least recently used statement is closed once the cache is
+ * full. A connection is only used by one borrower at a time, so the cache itself
+ * needs no locking; the counters are shared across connections.
+ */
+class StatementCache {
+
+    /** Hit and miss counters shared by every connection of a pool. */
+    static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        Stats snapshot() {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    /** Point-in-time view of the statement cache counters. */
+    static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%",
+                    hits, misses, evictions, getHitRate() * 100);
+        }
+    }
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<String, Entry> entries;
+
+    StatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing the cached one when it is free.
+     * The returned statement reports its connection as the given borrower handle.
+     */
+    PreparedStatement prepare(String sql, Connection borrower) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse) {
+            counters.hits.increment();
+            return entry.checkout(borrower);
+        }
+        counters.misses.increment();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (entry != null || maxSize == 0) {
+            // The cached copy is still open further up the caller's stack; hand out a one-off.
+            return statement;
+        }
+        entry = new Entry(statement);
+        entries.put(sql, entry);
+        evictOverflow();
+        return entry.checkout(borrower);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /** Closes every cached statement; called just before the physical connection is closed. */
+    void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.closeQuietly();
+        }
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            counters.evictions.increment();
+            if (eldest.inUse) {
+                eldest.evicted = true;
+            } else {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement checkout(Connection borrower) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new Lease(this, borrower));
+        }
+
+        void checkin() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                statement.close();
+                return;
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // The connection is going away anyway.
+            }
+        }
+    }
+
+    /** One borrower's use of a cached statement; close() returns it to the cache. */
+    private static final class Lease implements InvocationHandler {
+        private final Entry entry;
+        private final Connection borrower;
+        private final List<ResultSet> resultSets = new ArrayList<>(1);
+        private boolean closed;
+
+        Lease(Entry entry, Connection borrower) {
+            this.entry = entry;
+            this.borrower = borrower;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        closeResultSets();
+                        entry.checkin();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return borrower;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                resultSets.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        // A real close() would close open result sets; do the same so cursors don't outlive the lease.
+        private void closeResultSets() {
+            for (ResultSet rs : resultSets) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    // Ignore, the statement is being reset.
+                }
+            }
+            resultSets.clear();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package healthcare;
+
+import java.time.LocalDate;
+
+/**
+ * Field checks shared by the domain classes, the bulk loader and the HTTP service.
+ *
+ * Each check walks the value once and allocates nothing when it is valid, so the
+ * per-row cost on imports and on rows read back from the database stays small. A
+ * failed check returns a {@link FieldError} naming the field, what was wrong and
+ * where, which callers can report as is or wrap in one of the validation exceptions.
+ */
+final class Validation {
+
+    /** What was wrong with a field. */
+    enum ErrorCode {
+        MISSING,
+        WRONG_LENGTH,
+        NOT_A_DIGIT,
+        BAD_SEPARATOR,
+        OUT_OF_RANGE
+    }
+
+    /** One rejected field; position is the offending character index, or -1 for the whole value. */
+    static final class FieldError {
+        private final String field;
+        private final ErrorCode code;
+        private final int position;
+        private final String message;
+
+        FieldError(String field, ErrorCode code, int position, String message) {
+            this.field = field;
+            this.code = code;
+            this.position = position;
+            this.message = message;
+        }
+
+        public String getField() { return field; }
+        public ErrorCode getCode() { return code; }
+        public int getPosition() { return position; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return field + ": " + message;
+        }
+    }
+
+    static final String CONTACT_NUMBER = "contactNumber";
+    static final String APPOINTMENT_DATE = "appointmentDate";
+
+    static final int CONTACT_NUMBER_LENGTH = 10;
+    // The range of a MySQL DATE column
+    static final int MIN_YEAR = 1000;
+    static final int MAX_YEAR = 9999;
+
+    private static final String CONTACT_NUMBER_MESSAGE = "Contact number must be exactly 10 digits!";
+    private static final String DATE_FORMAT_MESSAGE = "Invalid date format! Use YYYY-MM-DD";
+
+    private Validation() {
+    }
+
+    /** Returns null if the value is exactly ten ASCII digits, otherwise the first problem found. */
+    static FieldError checkContactNumber(String field, String value) {
+        if (value == null) {
+            return new FieldError(field, ErrorCode.MISSING, -1, CONTACT_NUMBER_MESSAGE);
+        }
+        if (value.length() != CONTACT_NUMBER_LENGTH) {
+            return new FieldError(field, ErrorCode.WRONG_LENGTH, -1, CONTACT_NUMBER_MESSAGE);
+        }
+        for (int i = 0; i < CONTACT_NUMBER_LENGTH; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return new FieldError(field, ErrorCode.NOT_A_DIGIT, i, CONTACT_NUMBER_MESSAGE);
+            }
+        }
+        return null;
+    }
+
+    static void requireContactNumber(String field, String value) throws InvalidContactNumberException {
+        FieldError error = checkContactNumber(field, value);
+        if (error != null) {
+            throw new InvalidContactNumberException(error);
+        }
+    }
+
+    /** Returns null if the value is a real calendar date written as YYYY-MM-DD, otherwise the first problem found. */
+    static FieldError checkDate(String field, String value) {
+        if (value == null) {
+            return new FieldError(field, ErrorCode.MISSING, -1, DATE_FORMAT_MESSAGE);
+        }
+        if (value.length() != 10) {
+            return new FieldError(field, ErrorCode.WRONG_LENGTH, -1, DATE_FORMAT_MESSAGE);
+        }
+        for (int i = 0; i < 10; i++) {
+            char c = value.charAt(i);
+            if (i == 4 || i == 7) {
+                if (c != '-') {
+                    return new FieldError(field, ErrorCode.BAD_SEPARATOR, i, DATE_FORMAT_MESSAGE);
+                }
+            } else if (!isDigit(c)) {
+                return new FieldError(field, ErrorCode.NOT_A_DIGIT, i, DATE_FORMAT_MESSAGE);
+            }
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < MIN_YEAR) {
+            return new FieldError(field, ErrorCode.OUT_OF_RANGE, 0,
+                    "Invalid date " + value + ": year must be between " + MIN_YEAR + " and " + MAX_YEAR);
+        }
+        if (month < 1 || month > 12) {
+            return new FieldError(field, ErrorCode.OUT_OF_RANGE, 5,
+                    "Invalid date " + value + ": month must be between 01 and 12");
+        }
+        int lastDay = daysInMonth(year, month);
+        if (day < 1 || day > lastDay) {
+            return new FieldError(field, ErrorCode.OUT_OF_RANGE, 8,
+                    "Invalid date " + value + ": day must be between 01 and " + lastDay);
+        }
+        return null;
+    }
+
+    /** Checks the value like {@link #checkDate} and returns it as a LocalDate. */
+    static LocalDate parseDate(String field, String value) throws InvalidDateFormatException {
+        FieldError error = checkDate(field, value);
+        if (error != null) {
+            throw new InvalidDateFormatException(error);
+        }
+        return LocalDate.of(digits(value, 0, 4), digits(value, 5, 2), digits(value, 8, 2));
+    }
+
+    static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Only called on ranges already checked to be digits
+    private static int digits(String value, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+}
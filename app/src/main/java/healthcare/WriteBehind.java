@@ -0,0 +1,849 @@
+package healthcare;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Optional write-behind path for patient and condition inserts. Appointments are
+ * not queued: they go through the BookingEngine, which needs the database to pick
+ * a free slot.
+ *
+ * Callers put writes on a bounded queue and get a {@link Ticket} back. A journal
+ * thread takes whatever has queued up, appends it to a local journal file with
+ * one fsync for the whole group, and completes each ticket's durable future. From
+ * then on the write survives a crash. An apply thread then inserts the group into
+ * the database in one transaction, together with the highest journal sequence
+ * number it contains in the write_behind_checkpoint table, and completes the
+ * applied futures. On startup, journal records past the checkpoint are replayed,
+ * so every acknowledged write reaches the database exactly once.
+ *
+ * The journal is a series of segment files next to the configured path, each
+ * named after the first sequence number it holds. Once a segment reaches the
+ * rotation size a new one is started, and a finished segment is deleted as soon
+ * as the checkpoint has passed its last record, so the journal stays bounded
+ * under steady load.
+ *
+ * A full queue blocks submitters for up to the offer timeout, which pushes back
+ * on callers when the database falls behind. Transient database errors are
+ * retried with backoff. A write the database rejects, such as a duplicate ID,
+ * fails only its own applied future and is logged with its sequence number and
+ * contents, since nobody may be waiting on that future. Callers that have to hear
+ * about a rejection wait for applied rather than durable.
+ */
+class WriteBehind implements AutoCloseable {
+
+    /** Futures for one write: durable once journaled and fsynced, applied once committed to the database. */
+    static final class Ticket {
+        private final CompletableFuture<Long> durable = new CompletableFuture<>();
+        private final CompletableFuture<Void> applied = new CompletableFuture<>();
+
+        /** Completes with the write's journal sequence number. */
+        public CompletableFuture<Long> durable() { return durable; }
+        public CompletableFuture<Void> applied() { return applied; }
+    }
+
+    /** Point-in-time view of the pipeline counters. */
+    static final class Stats {
+        private final long submitted;
+        private final long journaled;
+        private final long applied;
+        private final long failed;
+        private final long groups;
+        private final long fsyncs;
+        private final int queued;
+        private final long journalBytes;
+
+        Stats(long submitted, long journaled, long applied, long failed, long groups, long fsyncs, int queued, long journalBytes) {
+            this.submitted = submitted;
+            this.journaled = journaled;
+            this.applied = applied;
+            this.failed = failed;
+            this.groups = groups;
+            this.fsyncs = fsyncs;
+            this.queued = queued;
+            this.journalBytes = journalBytes;
+        }
+
+        public long getSubmitted() { return submitted; }
+        public long getJournaled() { return journaled; }
+        public long getApplied() { return applied; }
+        public long getFailed() { return failed; }
+        public long getGroups() { return groups; }
+        public long getFsyncs() { return fsyncs; }
+        public int getQueued() { return queued; }
+        public long getJournalBytes() { return journalBytes; }
+
+        public double getAverageGroupSize() {
+            return groups == 0 ? 0.0 : (double) (applied + failed) / groups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("submitted=%d, journaled=%d, applied=%d, failed=%d, queued=%d, groups=%d, avgGroup=%.1f, fsyncs=%d, journalBytes=%d",
+                    submitted, journaled, applied, failed, queued, groups, getAverageGroupSize(), fsyncs, journalBytes);
+        }
+    }
+
+    private enum Type {
+        PATIENT, CONDITION
+    }
+
+    /** One journal file; only the journal thread appends to it. */
+    private static final class Segment {
+        final Path path;
+        final long firstSeq;
+        // Read by the apply thread once the segment is finished
+        volatile long lastSeq;
+        long bytes;
+
+        Segment(Path path, long firstSeq) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+            this.lastSeq = firstSeq - 1;
+        }
+    }
+
+    private static final class Write {
+        final Type type;
+        final byte[] payload;
+        final Ticket ticket;
+        long seq;
+
+        Write(Type type, byte[] payload, Ticket ticket) {
+            this.type = type;
+            this.payload = payload;
+            this.ticket = ticket;
+        }
+    }
+
+    private static final int MAGIC = 0x48435742; // "HCWB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    // Zero-padded so segment names sort in sequence order
+    private static final String SEGMENT_SUFFIX_FORMAT = ".%020d";
+    // length, seq, type before the payload; CRC after it
+    private static final int RECORD_OVERHEAD = 4 + 8 + 1 + 4;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long CLOSE_TIMEOUT_MILLIS = Long.getLong("healthcare.writeBehind.closeTimeoutMillis", 30000L);
+
+    private static final Metrics.Operation JOURNAL_APPEND = Metrics.operation("writeBehind.journalAppend");
+    private static final Metrics.Operation APPLY_GROUP = Metrics.operation("writeBehind.applyGroup");
+
+    private static final String CREATE_CHECKPOINT_SQL = "CREATE TABLE IF NOT EXISTS write_behind_checkpoint (" +
+            "writer_id VARCHAR(64) PRIMARY KEY," +
+            "last_seq BIGINT NOT NULL)";
+    private static final String UPDATE_CHECKPOINT_SQL = "UPDATE write_behind_checkpoint SET last_seq = ? WHERE writer_id = ?";
+
+    private final Path journalPath;
+    private final String writerId;
+    private final int maxGroup;
+    private final long offerTimeoutMillis;
+    private final long journalRotateBytes;
+    private final boolean fsync;
+
+    private final BlockingQueue<Write> queue;
+    // Groups that are journaled but not yet applied; small so a stalled database backs up into the queue
+    private final BlockingQueue<List<Write>> toApply = new ArrayBlockingQueue<>(16);
+    // Submitters share it while queueing; close() takes it exclusively so nothing is queued after the drain
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private final AtomicLong appliedSeq = new AtomicLong();
+    // Segments the journal thread has moved past, oldest first; the apply thread deletes them once applied
+    private final Queue<Segment> finishedSegments = new ConcurrentLinkedQueue<>();
+    // Kept here so the stats can still be read once the journal is closed
+    private final AtomicLong journalBytes = new AtomicLong();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder journaled = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+
+    private FileChannel journal;
+    private Segment segment;
+    private long nextSeq;
+    private volatile boolean closed;
+    // Set once close() stops waiting; an interrupt alone can be swallowed by the JDBC driver
+    private volatile boolean abandoned;
+    private Thread journalThread;
+    private Thread applyThread;
+
+    WriteBehind(Path journalPath, String writerId, int queueCapacity, int maxGroup, long offerTimeoutMillis,
+                long journalRotateBytes, boolean fsync) {
+        if (queueCapacity < 1 || maxGroup < 1) {
+            throw new IllegalArgumentException("Queue capacity and group size must be positive");
+        }
+        this.journalPath = journalPath;
+        this.writerId = writerId;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxGroup = maxGroup;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.journalRotateBytes = journalRotateBytes;
+        this.fsync = fsync;
+    }
+
+    /** Settings from healthcare.writeBehind.* system properties. */
+    static WriteBehind fromSystemProperties() {
+        return new WriteBehind(
+                Paths.get(System.getProperty("healthcare.writeBehind.journal", "healthcare-writes.journal")),
+                System.getProperty("healthcare.writeBehind.writerId", "default"),
+                Integer.getInteger("healthcare.writeBehind.queueSize", 10000),
+                Integer.getInteger("healthcare.writeBehind.maxGroup", 500),
+                Long.getLong("healthcare.writeBehind.offerTimeoutMillis", 30000L),
+                Long.getLong("healthcare.writeBehind.journalRotateBytes", 64L * 1024 * 1024),
+                Boolean.parseBoolean(System.getProperty("healthcare.writeBehind.fsync", "true")));
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean("healthcare.writeBehind.enabled");
+    }
+
+    /** Replays anything the database has not seen yet, then starts the background threads. */
+    void start() throws SQLException, IOException {
+        long checkpoint = readCheckpoint();
+        List<Path> segments = listSegments();
+        List<Write> pending = new ArrayList<>();
+        long lastSeq = recover(segments, checkpoint, pending);
+        if (!pending.isEmpty()) {
+            Log.info("write_behind_replay", "Replaying " + pending.size() + " journaled write(s) after seq " + checkpoint,
+                    "writes", pending.size(), "checkpoint", checkpoint);
+            // On failure the segments are left as they are and replayed on the next start
+            apply(pending);
+        }
+        nextSeq = Math.max(checkpoint, lastSeq) + 1;
+        appliedSeq.set(nextSeq - 1);
+        // Everything in the old segments is in the database now
+        for (Path path : segments) {
+            Files.delete(path);
+        }
+        openSegment();
+
+        journalThread = new Thread(this::journalLoop, "write-behind-journal");
+        applyThread = new Thread(this::applyLoop, "write-behind-apply");
+        journalThread.setDaemon(true);
+        applyThread.setDaemon(true);
+        journalThread.start();
+        applyThread.start();
+    }
+
+    public Ticket submitPatient(Patient patient) throws SQLException {
+        List<String> conditions = patient.getMedicalConditions();
+        return submit(Type.PATIENT, out -> {
+            out.writeInt(patient.getPatientID());
+            out.writeUTF(patient.getName());
+            out.writeInt(patient.getAge());
+            out.writeUTF(patient.getGender());
+            out.writeUTF(patient.getContactNumber());
+            out.writeInt(conditions.size());
+            for (String condition : conditions) {
+                out.writeUTF(condition);
+            }
+        });
+    }
+
+    public Ticket submitCondition(int patientId, String condition) throws SQLException {
+        return submit(Type.CONDITION, out -> {
+            out.writeInt(patientId);
+            out.writeUTF(condition);
+        });
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private Ticket submit(Type type, PayloadWriter writer) throws SQLException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (bytes.size() > MAX_PAYLOAD) {
+            throw new SQLException("Write is too large for the journal (" + bytes.size() + " bytes)");
+        }
+        Ticket ticket = new Ticket();
+        Write write = new Write(type, bytes.toByteArray(), ticket);
+        submitLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("Write-behind queue is closed");
+            }
+            if (!queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientException("Write-behind queue is full after " + offerTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException("Interrupted while waiting for the write-behind queue", e);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        submitted.increment();
+        return ticket;
+    }
+
+    private void journalLoop() {
+        List<Write> group = new ArrayList<>(maxGroup);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxGroup - 1);
+                rotateIfFull();
+                long start = System.nanoTime();
+                try {
+                    appendToJournal(group);
+                } catch (IOException e) {
+                    JOURNAL_APPEND.failed(e);
+                    throw e;
+                } finally {
+                    JOURNAL_APPEND.finish(start);
+                }
+                for (Write write : group) {
+                    write.ticket.durable.complete(write.seq);
+                }
+                journaled.add(group.size());
+                toApply.put(new ArrayList<>(group));
+            } catch (IOException e) {
+                Log.error("write_behind_journal_failed", "Error writing write-behind journal", e, "writes", group.size());
+                for (Write write : group) {
+                    write.ticket.durable.completeExceptionally(e);
+                    write.ticket.applied.completeExceptionally(e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            group.clear();
+        }
+    }
+
+    private void appendToJournal(List<Write> group) throws IOException {
+        int size = 0;
+        for (Write write : group) {
+            size += RECORD_OVERHEAD + write.payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (Write write : group) {
+            write.seq = nextSeq++;
+            int start = buffer.position();
+            buffer.putInt(write.payload.length);
+            buffer.putLong(write.seq);
+            buffer.put((byte) write.type.ordinal());
+            buffer.put(write.payload);
+            crc.reset();
+            crc.update(buffer.array(), start + 4, 8 + 1 + write.payload.length);
+            buffer.putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        long end = journal.size();
+        try {
+            journal.position(end);
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            if (fsync) {
+                journal.force(false);
+                fsyncs.increment();
+            }
+            segment.lastSeq = nextSeq - 1;
+            segment.bytes += size;
+            journalBytes.addAndGet(size);
+        } catch (IOException e) {
+            // The callers are told the writes failed, so they must not come back on replay
+            journal.truncate(end);
+            throw e;
+        }
+    }
+
+    // Moves on to a new segment once the current one is full; only the journal thread writes to the journal
+    private void rotateIfFull() throws IOException {
+        if (segment.bytes < journalRotateBytes || segment.lastSeq < segment.firstSeq) {
+            return;
+        }
+        Segment full = segment;
+        FileChannel fullChannel = journal;
+        // If the new segment cannot be opened, appends carry on in the full one
+        openSegment();
+        fullChannel.close();
+        finishedSegments.add(full);
+    }
+
+    private void openSegment() throws IOException {
+        Segment next = new Segment(journalPath.resolveSibling(journalPath.getFileName()
+                + String.format(SEGMENT_SUFFIX_FORMAT, nextSeq)), nextSeq);
+        journal = FileChannel.open(next.path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+        journal.force(true);
+        next.bytes = HEADER_BYTES;
+        segment = next;
+        journalBytes.addAndGet(HEADER_BYTES);
+    }
+
+    // Only the apply thread calls this, once the checkpoint has moved
+    private void deleteAppliedSegments() {
+        Segment oldest;
+        while ((oldest = finishedSegments.peek()) != null && oldest.lastSeq <= appliedSeq.get()) {
+            finishedSegments.poll();
+            try {
+                Files.deleteIfExists(oldest.path);
+                journalBytes.addAndGet(-oldest.bytes);
+            } catch (IOException e) {
+                // Harmless apart from the disk space: the next start deletes it after reading it again
+                Log.error("write_behind_segment_delete_failed", "Error deleting applied journal segment", e,
+                        "segment", oldest.path.toString(), "lastSeq", oldest.lastSeq);
+            }
+        }
+    }
+
+    // Journal segments of this writer in sequence order
+    private List<Path> listSegments() throws IOException {
+        String prefix = journalPath.getFileName().toString() + ".";
+        Path dir = journalPath.toAbsolutePath().getParent();
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.length() == prefix.length() + 20 && name.startsWith(prefix)
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return segments;
+    }
+
+    private void applyLoop() {
+        while (!abandoned && (!closed || !toApply.isEmpty() || journalThread.isAlive())) {
+            try {
+                List<Write> group = toApply.poll(100, TimeUnit.MILLISECONDS);
+                if (group != null) {
+                    applyWithRetry(group);
+                    deleteAppliedSegments();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void applyWithRetry(List<Write> group) {
+        long backoff = 50;
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                apply(group);
+                APPLY_GROUP.finish(start);
+                return;
+            } catch (SQLException e) {
+                APPLY_GROUP.finish(start);
+                APPLY_GROUP.failed(e);
+                Log.error("write_behind_apply_failed", "Error applying write-behind group, retrying in " + backoff + " ms", e,
+                        "writes", group.size(), "backoffMs", backoff);
+                // The journal still has the group; it is replayed on the next start
+                if (abandoned) {
+                    failUnapplied(group);
+                    return;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    failUnapplied(group);
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    // One transaction for the group and its checkpoint; falls back to one savepoint per write if the batch is refused
+    private void apply(List<Write> group) throws SQLException {
+        long lastSeq = group.get(group.size() - 1).seq;
+        Map<Write, SQLException> rejected = new HashMap<>();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                applyBatched(conn, group);
+            } catch (SQLException e) {
+                conn.rollback();
+                if (isTransient(e)) {
+                    throw e;
+                }
+                for (Write write : group) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        applyBatched(conn, List.of(write));
+                        conn.releaseSavepoint(savepoint);
+                    } catch (SQLException rowError) {
+                        if (isTransient(rowError)) {
+                            conn.rollback();
+                            throw rowError;
+                        }
+                        conn.rollback(savepoint);
+                        rejected.put(write, rowError);
+                    }
+                }
+            }
+            try (PreparedStatement checkpoint = conn.prepareStatement(UPDATE_CHECKPOINT_SQL)) {
+                checkpoint.setLong(1, lastSeq);
+                checkpoint.setString(2, writerId);
+                checkpoint.executeUpdate();
+            }
+            conn.commit();
+        }
+        appliedSeq.set(lastSeq);
+        groups.increment();
+        for (Write write : group) {
+            SQLException reason = rejected.get(write);
+            if (reason != null) {
+                failed.increment();
+                Log.error("write_behind_rejected", "Database rejected journaled write " + write.seq, reason,
+                        "seq", write.seq, "type", write.type.name(), "payload", describe(write));
+                write.ticket.applied.completeExceptionally(reason);
+            } else {
+                applied.increment();
+                try {
+                    afterApply(write);
+                } catch (RuntimeException e) {
+                    // The row is committed; only the cache or search index missed it, and the apply thread must go on
+                    Log.error("write_behind_after_apply_failed", "Error updating caches after write " + write.seq, e,
+                            "seq", write.seq, "type", write.type.name());
+                }
+                write.ticket.applied.complete(null);
+            }
+        }
+    }
+
+    private static void applyBatched(Connection conn, List<Write> group) throws SQLException {
+        try (PreparedStatement patients = conn.prepareStatement(DatabaseManager.INSERT_PATIENT_SQL);
+             PreparedStatement conditions = conn.prepareStatement(DatabaseManager.INSERT_CONDITION_SQL)) {
+            int patientRows = 0;
+            int conditionRows = 0;
+            for (Write write : group) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(write.payload));
+                try {
+                    switch (write.type) {
+                        case PATIENT: {
+                            int patientId = in.readInt();
+                            patients.setInt(1, patientId);
+                            patients.setString(2, in.readUTF());
+                            patients.setInt(3, in.readInt());
+                            patients.setString(4, in.readUTF());
+                            patients.setString(5, in.readUTF());
+                            patients.addBatch();
+                            patientRows++;
+                            for (int i = in.readInt(); i > 0; i--) {
+                                conditions.setInt(1, patientId);
+                                conditions.setString(2, in.readUTF());
+                                conditions.addBatch();
+                                conditionRows++;
+                            }
+                            break;
+                        }
+                        case CONDITION:
+                            conditions.setInt(1, in.readInt());
+                            conditions.setString(2, in.readUTF());
+                            conditions.addBatch();
+                            conditionRows++;
+                            break;
+                        default:
+                            throw new IllegalStateException("Unhandled write type " + write.type);
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Corrupt write-behind record " + write.seq, e);
+                }
+            }
+            // Parents before children so a condition can follow its patient in the same group
+            if (patientRows > 0) {
+                patients.executeBatch();
+            }
+            if (conditionRows > 0) {
+                conditions.executeBatch();
+            }
+        }
+    }
+
+    // Keeps the caches and search index in step once the rows are really in the database
+    private static void afterApply(Write write) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(write.payload));
+        try {
+            switch (write.type) {
+                case PATIENT: {
+                    int patientId = in.readInt();
+                    String name = in.readUTF();
+                    in.readInt();
+                    in.readUTF();
+                    in.readUTF();
+                    List<String> conditions = new ArrayList<>();
+                    for (int i = in.readInt(); i > 0; i--) {
+                        conditions.add(in.readUTF());
+                    }
+                    DatabaseManager.patientWritten(patientId, name, conditions);
+                    break;
+                }
+                case CONDITION: {
+                    int patientId = in.readInt();
+                    DatabaseManager.conditionWritten(patientId, in.readUTF());
+                    break;
+                }
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The record's fields as text, so a rejected write can be found and entered again by hand
+    private static String describe(Write write) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(write.payload));
+        StringBuilder text = new StringBuilder();
+        try {
+            switch (write.type) {
+                case PATIENT: {
+                    text.append("patientId=").append(in.readInt())
+                            .append(", name=").append(in.readUTF())
+                            .append(", age=").append(in.readInt())
+                            .append(", gender=").append(in.readUTF())
+                            .append(", contactNumber=").append(in.readUTF())
+                            .append(", conditions=[");
+                    for (int i = in.readInt(); i > 0; i--) {
+                        text.append(in.readUTF()).append(i > 1 ? "; " : "");
+                    }
+                    return text.append(']').toString();
+                }
+                case CONDITION:
+                    return text.append("patientId=").append(in.readInt())
+                            .append(", condition=").append(in.readUTF()).toString();
+                default:
+                    throw new IllegalStateException("Unhandled write type " + write.type);
+            }
+        } catch (IOException e) {
+            return text.append(" <unreadable, ").append(write.payload.length).append(" bytes>").toString();
+        }
+    }
+
+    // Connection problems, timeouts and deadlocks are worth retrying; anything else is about the write itself
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || (state != null && (state.startsWith("08") || state.startsWith("40")));
+    }
+
+    private long readCheckpoint() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(CREATE_CHECKPOINT_SQL);
+            try (PreparedStatement select = conn.prepareStatement("SELECT last_seq FROM write_behind_checkpoint WHERE writer_id = ?")) {
+                select.setString(1, writerId);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getLong(1);
+                    }
+                }
+            }
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO write_behind_checkpoint (writer_id, last_seq) VALUES (?, 0)")) {
+                insert.setString(1, writerId);
+                insert.executeUpdate();
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the segments in order, collecting the writes after the checkpoint.
+     * A torn or corrupt record at the end of the last segment can only be the tail
+     * of an interrupted append that was never acknowledged, so reading stops
+     * there; anywhere else it means acknowledged writes are damaged. Returns the
+     * last sequence number seen.
+     */
+    private long recover(List<Path> segments, long checkpoint, List<Write> pending) throws IOException {
+        long lastSeq = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_BYTES && last) {
+                    continue;
+                }
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                if (size < HEADER_BYTES || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a write-behind journal segment: " + path);
+                }
+                long goodUpTo = HEADER_BYTES;
+                CRC32 crc = new CRC32();
+                while (goodUpTo < size) {
+                    try {
+                        int length = in.readInt();
+                        if (length < 0 || length > MAX_PAYLOAD) {
+                            break;
+                        }
+                        long seq = in.readLong();
+                        int type = in.readUnsignedByte();
+                        byte[] payload = new byte[length];
+                        in.readFully(payload);
+                        int storedCrc = in.readInt();
+                        ByteBuffer checked = ByteBuffer.allocate(9 + length).putLong(seq).put((byte) type).put(payload);
+                        crc.reset();
+                        crc.update(checked.array());
+                        if ((int) crc.getValue() != storedCrc || type >= Type.values().length) {
+                            break;
+                        }
+                        if (seq > checkpoint) {
+                            Write write = new Write(Type.values()[type], payload, new Ticket());
+                            write.seq = seq;
+                            pending.add(write);
+                        }
+                        lastSeq = seq;
+                        goodUpTo += RECORD_OVERHEAD + length;
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+                if (goodUpTo < size) {
+                    if (!last) {
+                        throw new IOException("Corrupt record in write-behind journal segment " + path + " at byte " + goodUpTo);
+                    }
+                    Log.warn("write_behind_torn_tail", "Write-behind journal had a torn tail; ignoring " + (size - goodUpTo) + " byte(s)",
+                            "journal", path.toString(), "bytes", size - goodUpTo);
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    private static void joinUntil(Thread thread, long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (thread != null && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+        }
+    }
+
+    // Both threads have stopped; nothing else touches the queues or nextSeq now
+    private void failLeftovers(long timeoutMillis) {
+        long unapplied = nextSeq - 1 - appliedSeq.get();
+        List<List<Write>> groupsLeft = new ArrayList<>();
+        toApply.drainTo(groupsLeft);
+        for (List<Write> group : groupsLeft) {
+            failUnapplied(group);
+        }
+        List<Write> unjournaled = new ArrayList<>();
+        queue.drainTo(unjournaled);
+        SQLException notJournaled = new SQLTransientException("Write-behind closed before the write was journaled");
+        for (Write write : unjournaled) {
+            write.ticket.durable.completeExceptionally(notJournaled);
+            write.ticket.applied.completeExceptionally(notJournaled);
+        }
+        Log.warn("write_behind_close_timeout", "Write-behind closed after " + timeoutMillis + " ms with " + unapplied
+                        + " journaled write(s) not applied and " + unjournaled.size() + " not journaled",
+                "unapplied", unapplied, "unjournaled", unjournaled.size(), "appliedSeq", appliedSeq.get());
+    }
+
+    private static void failUnapplied(List<Write> group) {
+        SQLException notApplied = new SQLTransientException(
+                "Write-behind closed before the write was applied; it is replayed from the journal on the next start");
+        for (Write write : group) {
+            write.ticket.applied.completeExceptionally(notApplied);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(submitted.sum(), journaled.sum(), applied.sum(), failed.sum(), groups.sum(), fsyncs.sum(),
+                queue.size(), journalBytes.get());
+    }
+
+    /** Stops taking writes, waits for everything queued to be journaled and applied, and closes the journal. */
+    @Override
+    public void close() {
+        close(CLOSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Like {@link #close()}, but gives up on the database after the timeout. The
+     * apply thread retries for as long as the database is unreachable, so it is
+     * interrupted then; whatever it had not applied is in the journal and is
+     * replayed on the next start.
+     */
+    void close(long timeoutMillis) {
+        submitLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            joinUntil(journalThread, deadline);
+            joinUntil(applyThread, deadline);
+            if (applyThread != null && applyThread.isAlive()) {
+                abandoned = true;
+                applyThread.interrupt();
+                applyThread.join();
+                // It may be blocked handing a group to the apply thread that is gone now
+                journalThread.interrupt();
+                journalThread.join();
+                failLeftovers(timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deleteAppliedSegments();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            Log.error("write_behind_close_failed", "Error closing write-behind journal", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookingEngineTest {
+    private static final int PATIENT_ID = 710_001;
+    private static final AtomicInteger nextDoctorId = new AtomicInteger(710_000);
+
+    private static Patient patient;
+    private final BookingEngine engine = new BookingEngine(LocalTime.of(9, 0), 30, 4, 3);
+    private final String day = LocalDate.now().plusYears(20).toString();
+    private Doctor doctor;
+
+    @BeforeAll
+    static void seedPatient() throws Exception {
+        TestDatabase.start();
+        patient = new Patient(PATIENT_ID, "Booking Patient", 40, "F", "9876543210");
+        if (DatabaseManager.getPatientById(PATIENT_ID) == null) {
+            DatabaseManager.insertPatient(patient);
+        }
+    }
+
+    @BeforeEach
+    void seedDoctor() throws Exception {
+        doctor = new Doctor(nextDoctorId.incrementAndGet(), "Dr. Slots", "Cardiology", "9876543210");
+        DatabaseManager.insertDoctor(doctor);
+    }
+
+    @Test
+    void booksTheEarliestFreeSlotFirst() throws Exception {
+        for (int slot = 0; slot < 3; slot++) {
+            Appointment appointment = engine.book(patient, doctor, day, null);
+            assertEquals(slot, appointment.getSlotIndex());
+            assertEquals(LocalTime.of(9, 0).plusMinutes(30L * slot), appointment.getStartTime());
+        }
+    }
+
+    @Test
+    void refusesASlotThatIsTaken() throws Exception {
+        engine.book(patient, doctor, day, LocalTime.of(9, 30));
+        assertThrows(SlotUnavailableException.class, () -> engine.book(patient, doctor, day, LocalTime.of(9, 30)));
+        assertEquals(0, engine.book(patient, doctor, day, null).getSlotIndex());
+    }
+
+    @Test
+    void refusesBookingsPastTheDailyCapacity() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            engine.book(patient, doctor, day, null);
+        }
+        assertThrows(SlotUnavailableException.class, () -> engine.book(patient, doctor, day, null));
+        assertEquals(3, countBookings(doctor.getDoctorID()));
+    }
+
+    @Test
+    void refusesTimesOffTheSlotGrid() {
+        assertThrows(SlotUnavailableException.class, () -> engine.book(patient, doctor, day, LocalTime.of(9, 10)));
+        assertThrows(SlotUnavailableException.class, () -> engine.book(patient, doctor, day, LocalTime.of(11, 0)));
+    }
+
+    @Test
+    void concurrentBookingsNeverShareASlot() throws Exception {
+        BookingEngine wide = new BookingEngine(LocalTime.of(9, 0), 30, 16, 16);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(threads.submit(() -> {
+                    try {
+                        wide.book(patient, doctor, day, null);
+                        return true;
+                    } catch (SlotUnavailableException e) {
+                        return false;
+                    }
+                }));
+            }
+            int booked = 0;
+            for (Future<Boolean> result : results) {
+                booked += result.get() ? 1 : 0;
+            }
+            assertEquals(16, booked);
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals(16, countBookings(doctor.getDoctorID()));
+        assertEquals(16, TestDatabase.count("SELECT COUNT(DISTINCT slot_index) FROM appointments WHERE doctor_id = "
+                + doctor.getDoctorID()));
+    }
+
+    @Test
+    void integrityErrorsOtherThanATakenSlotAreNotRetried() throws Exception {
+        Patient unknown = new Patient(PATIENT_ID + 1, "Not Saved", 30, "M", "9876543210");
+        SQLException e = assertThrows(SQLException.class, () -> engine.book(unknown, doctor, day, null));
+        assertTrue(e.getSQLState().startsWith("23"));
+        assertFalse(e.getErrorCode() == 1062 || "23505".equals(e.getSQLState()));
+        assertEquals(0, countBookings(doctor.getDoctorID()));
+    }
+
+    private static long countBookings(int doctorId) throws SQLException {
+        return TestDatabase.count("SELECT COUNT(*) FROM appointments WHERE doctor_id = " + doctorId);
+    }
+}
@@ -0,0 +1,131 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+    private static final String URL = "jdbc:h2:mem:pool-test;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(URL, "sa", "", 2, 200, 8);
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS items (id INT PRIMARY KEY)");
+            stmt.executeUpdate("DELETE FROM items");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void reusesReturnedConnections() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            try (Connection conn = pool.getConnection()) {
+                assertTrue(conn.isValid(1));
+            }
+        }
+        ConnectionPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.getCreated());
+        assertEquals(0, stats.getActive());
+        assertEquals(1, stats.getIdle());
+    }
+
+    @Test
+    void timesOutWhenEveryConnectionIsInUse() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        }
+        assertEquals(1, pool.getStats().getTimeouts());
+        assertEquals(2, pool.getStats().getIdle());
+    }
+
+    @Test
+    void handsAReturnedConnectionToAWaitingCaller() throws Exception {
+        ConnectionPool single = new ConnectionPool(URL, "sa", "", 1, 5000, 8);
+        try {
+            Connection held = single.getConnection();
+            CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+                try (Connection conn = single.getConnection()) {
+                    return conn.isValid(1);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            while (single.getStats().getWaiting() == 0) {
+                Thread.sleep(5);
+            }
+            held.close();
+            assertTrue(waiter.get(5, TimeUnit.SECONDS));
+            assertEquals(1, single.getStats().getCreated());
+        } finally {
+            single.close();
+        }
+    }
+
+    @Test
+    void rollsBackWhatTheBorrowerLeftOpen() throws SQLException {
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO items VALUES (1)");
+        }
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM items")) {
+            assertTrue(conn.getAutoCommit());
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void restoresTheIsolationLevelTheBorrowerChanged() throws SQLException {
+        int isolation;
+        try (Connection conn = pool.getConnection()) {
+            isolation = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        }
+        try (Connection conn = pool.getConnection()) {
+            assertEquals(isolation, conn.getTransactionIsolation());
+        }
+        assertEquals(1, pool.getStats().getCreated());
+    }
+
+    @Test
+    void handleCannotBeUsedAfterClose() throws SQLException {
+        Connection conn = pool.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        // Closing twice must not hand the connection back twice
+        conn.close();
+        assertEquals(1, pool.getStats().getIdle());
+    }
+
+    @Test
+    void closedPoolRefusesConnections() throws SQLException {
+        Connection held = pool.getConnection();
+        pool.close();
+        SQLException e = assertThrows(SQLException.class, pool::getConnection);
+        assertEquals("08003", e.getSQLState());
+        held.close();
+        assertFalse(pool.getStats().getActive() > 0);
+        assertEquals(0, pool.getStats().getIdle());
+    }
+}
@@ -0,0 +1,129 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Runs against DatabaseManager's own Reports, which the write hooks and BulkLoader report to. */
+class ReportsTest {
+    private static final int PATIENT_ID = 730_001;
+    // Appointment IDs the tests choose themselves stay below this one, so they land under the watermark
+    private static final int ANCHOR_APPOINTMENT_ID = 739_999;
+    private static final LocalDate DAY = LocalDate.of(2060, 3, 1);
+    private static final AtomicInteger nextDoctorId = new AtomicInteger(730_000);
+    private static final AtomicInteger nextAppointmentId = new AtomicInteger(730_000);
+
+    private static Patient patient;
+    private final Reports reports = DatabaseManager.getReports();
+    private Doctor doctor;
+
+    @BeforeAll
+    static void seed() throws Exception {
+        TestDatabase.start();
+        patient = new Patient(PATIENT_ID, "Reports Patient", 35, "F", "9876543210");
+        if (DatabaseManager.getPatientById(PATIENT_ID) == null) {
+            DatabaseManager.insertPatient(patient);
+            Doctor anchor = new Doctor(nextDoctorId.incrementAndGet(), "Dr. Anchor", "Reports Anchor", "9876543210");
+            DatabaseManager.insertDoctor(anchor);
+            TestDatabase.execute("INSERT INTO appointments (appointment_id, patient_id, doctor_id, appointment_date) VALUES ("
+                    + ANCHOR_APPOINTMENT_ID + ", " + PATIENT_ID + ", " + anchor.getDoctorID() + ", DATE '" + DAY + "')");
+        }
+    }
+
+    @BeforeEach
+    void seedDoctor() throws Exception {
+        int id = nextDoctorId.incrementAndGet();
+        doctor = new Doctor(id, "Dr. Report", "Reports " + id, "9876543210");
+        DatabaseManager.insertDoctor(doctor);
+        // Start every test from published counts
+        reports.refresh();
+    }
+
+    @Test
+    void incrementalRefreshReadsOnlyNewRowsAndMatchesAFullOne() throws Exception {
+        reports.invalidate();
+        reports.refresh();
+        Reports.Stats full = reports.getStats();
+
+        BookingEngine engine = new BookingEngine(LocalTime.of(9, 0), 30, 16, 16);
+        for (int i = 0; i < 3; i++) {
+            engine.book(patient, doctor, DAY.toString(), null);
+        }
+        assertEquals(3, reports.refresh());
+        Reports.Stats incremental = reports.getStats();
+        assertEquals(full.getFullRefreshes(), incremental.getFullRefreshes());
+        assertEquals(full.getIncrementalRefreshes() + 1, incremental.getIncrementalRefreshes());
+        assertEquals(full.getAppointments() + 3, incremental.getAppointments());
+        assertEquals(3, load());
+
+        List<Reports.DoctorLoad> before = reports.getDoctorLoad(DAY, 7);
+        reports.invalidate();
+        reports.refresh();
+        assertEquals(full.getFullRefreshes() + 1, reports.getStats().getFullRefreshes());
+        assertEquals(before.toString(), reports.getDoctorLoad(DAY, 7).toString());
+        assertEquals(incremental.getAppointments(), reports.getStats().getAppointments());
+    }
+
+    @Test
+    void insertBelowTheWatermarkIsMissedUntilInvalidated() throws Exception {
+        // Written behind the hooks' back, as another process would
+        TestDatabase.execute("INSERT INTO appointments (appointment_id, patient_id, doctor_id, appointment_date) VALUES ("
+                + nextAppointmentId.incrementAndGet() + ", " + PATIENT_ID + ", " + doctor.getDoctorID() + ", DATE '" + DAY + "')");
+        long fullRefreshes = reports.getStats().getFullRefreshes();
+        reports.refresh();
+        assertEquals(fullRefreshes, reports.getStats().getFullRefreshes());
+        assertEquals(0, load());
+
+        reports.invalidate();
+        reports.refresh();
+        assertEquals(fullRefreshes + 1, reports.getStats().getFullRefreshes());
+        assertEquals(1, load());
+    }
+
+    @Test
+    void hookedInsertBelowTheWatermarkForcesAFullRefresh() throws Exception {
+        DatabaseManager.createAppointment(new Appointment(nextAppointmentId.incrementAndGet(), patient, doctor, DAY));
+        long fullRefreshes = reports.getStats().getFullRefreshes();
+        reports.refresh();
+        assertEquals(fullRefreshes + 1, reports.getStats().getFullRefreshes());
+        assertEquals(1, load());
+    }
+
+    @Test
+    void importedAppointmentsAreCounted() throws Exception {
+        StringBuilder csv = new StringBuilder("appointment_id,patient_id,doctor_id,appointment_date\n");
+        for (int i = 0; i < 4; i++) {
+            csv.append(nextAppointmentId.incrementAndGet()).append(',').append(PATIENT_ID).append(',')
+                    .append(doctor.getDoctorID()).append(',').append(DAY.plusDays(i % 2)).append('\n');
+        }
+        long fullRefreshes = reports.getStats().getFullRefreshes();
+        BulkLoader.Report imported = new BulkLoader(2).load(BulkLoader.RecordType.APPOINTMENTS,
+                new StringReader(csv.toString()), new StringWriter());
+        assertEquals(4, imported.getRowsLoaded());
+
+        reports.refresh();
+        assertEquals(fullRefreshes + 1, reports.getStats().getFullRefreshes());
+        assertEquals(4, load());
+        long demand = reports.getSpecializationDemand(DAY, 7).stream()
+                .filter(count -> count.getLabel().equals(doctor.getSpecialization()))
+                .mapToLong(Reports.Count::getCount)
+                .sum();
+        assertEquals(4, demand);
+    }
+
+    private long load() throws SQLException {
+        return reports.getDoctorLoad(DAY, 7).stream()
+                .filter(load -> load.getDoctorId() == doctor.getDoctorID())
+                .mapToLong(Reports.DoctorLoad::getTotal)
+                .sum();
+    }
+}
@@ -0,0 +1,105 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Each test uses its own SearchIndex; only the rebuild test reads the shared database. */
+class SearchIndexTest {
+    private static final int DOCTOR_ID = 740_001;
+
+    private final SearchIndex index = new SearchIndex();
+
+    @Test
+    void everyQueryWordMustPrefixAWordOfTheField() {
+        index.patientSaved(1, "John Smith", List.of("Type 2 diabetes"));
+        index.patientSaved(2, "Johnny Smithers", List.of("Asthma"));
+        index.patientSaved(3, "Jane Smith", List.of("Diabetic retinopathy"));
+
+        assertEquals(List.of(1, 2), ids(index.findPatientsByName("jo sm", 10)));
+        assertEquals(List.of(1, 2), ids(index.findPatientsByName("SMITH jo", 10)));
+        assertEquals(List.of(3), ids(index.findPatientsByName("jane s", 10)));
+        assertEquals(List.of(), ids(index.findPatientsByName("jo x", 10)));
+        assertEquals(List.of(1), ids(index.findPatientsByCondition("type diab", 10)));
+        assertEquals(List.of(1, 3), ids(index.findPatientsByCondition("diab", 10)));
+        assertEquals(1, index.findPatientsByName("smith", 1).size());
+    }
+
+    @Test
+    void renameAndDeleteLeaveNoStaleNodes() {
+        index.doctorSaved(1, "Gregory House", "Nephrology");
+        index.patientSaved(1, "Original Name", List.of());
+        index.doctorSaved(1, "Lisa Cuddy", "Endocrinology");
+        index.patientSaved(1, "Renamed Patient", List.of());
+
+        assertEquals(List.of(), ids(index.findDoctorsByName("greg", 10)));
+        assertEquals(List.of(), ids(index.findDoctorsBySpecialization("neph", 10)));
+        assertEquals(List.of(1), ids(index.findDoctorsByName("cud", 10)));
+        assertEquals(List.of(), ids(index.findPatientsByName("orig", 10)));
+        assertEquals(List.of(1), ids(index.findPatientsByName("renamed", 10)));
+
+        SearchIndex expected = new SearchIndex();
+        expected.doctorSaved(1, "Lisa Cuddy", "Endocrinology");
+        expected.patientSaved(1, "Renamed Patient", List.of());
+        assertEquals(expected.getStats().getTrieNodes(), index.getStats().getTrieNodes());
+        assertEquals(expected.getStats().getPostings(), index.getStats().getPostings());
+
+        index.doctorDeleted(1);
+        expected = new SearchIndex();
+        expected.patientSaved(1, "Renamed Patient", List.of());
+        assertEquals(List.of(), ids(index.findDoctorsByName("lisa", 10)));
+        assertEquals(expected.getStats().getTrieNodes(), index.getStats().getTrieNodes());
+        assertEquals(expected.getStats().getPostings(), index.getStats().getPostings());
+    }
+
+    @Test
+    void writesDuringARebuildSurviveTheSwap() throws Exception {
+        TestDatabase.start();
+        if (DatabaseManager.getDoctorById(DOCTOR_ID) == null) {
+            DatabaseManager.insertDoctor(new Doctor(DOCTOR_ID, "Dr. Persisted Quillon", "Cardiology", "9876543210"));
+        }
+        // Not in the database, so a rebuild drops it
+        index.doctorSaved(-1, "Dr. Vanished Quillon", "Cardiology");
+
+        // With every pooled connection taken, the rebuild waits inside its load
+        List<Connection> held = new ArrayList<>();
+        CompletableFuture<Void> rebuild;
+        try {
+            while (held.size() < Integer.getInteger("healthcare.db.pool.size", 10)) {
+                held.add(DatabaseManager.getConnection());
+            }
+            rebuild = CompletableFuture.runAsync(() -> {
+                try {
+                    index.rebuild();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            while (DatabaseManager.getPoolStats().getWaiting() == 0) {
+                Thread.sleep(5);
+            }
+            index.doctorSaved(-2, "Dr. Written Quillon", "Cardiology");
+        } finally {
+            for (Connection conn : held) {
+                conn.close();
+            }
+        }
+        rebuild.get(30, TimeUnit.SECONDS);
+
+        List<Integer> found = ids(index.findDoctorsByName("quillon", 10));
+        assertTrue(found.contains(DOCTOR_ID));
+        assertTrue(found.contains(-2));
+        assertEquals(2, found.size());
+    }
+
+    private static List<Integer> ids(List<SearchIndex.Hit> hits) {
+        return hits.stream().map(SearchIndex.Hit::getId).sorted().collect(Collectors.toList());
+    }
+}
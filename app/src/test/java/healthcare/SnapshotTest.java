@@ -0,0 +1,129 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Export, verify and import; runs in its own surefire execution because import needs empty tables. */
+class SnapshotTest {
+    private static final String LONG_HISTORY = "Hypertension since 2009, managed with lifestyle changes. ".repeat(8);
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void seed() throws SQLException {
+        TestDatabase.start();
+        TestDatabase.clear();
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            for (int i = 1; i <= 40; i++) {
+                stmt.executeUpdate("INSERT INTO patients (patient_id, name, age, gender, contact_number) VALUES ("
+                        + i + ", 'Patient " + i + "', " + (20 + i) + ", '" + (i % 2 == 0 ? "F" : "M") + "', '98765432" + (10 + i) + "')");
+            }
+            for (int i = 1; i <= 5; i++) {
+                stmt.executeUpdate("INSERT INTO doctors (doctor_id, name, specialization, contact_number) VALUES ("
+                        + i + ", 'Dr. " + i + "', 'Cardiology', '91234567" + (10 + i) + "')");
+            }
+            for (int i = 1; i <= 30; i++) {
+                // Every third appointment predates slot booking and has no slot
+                String slot = i % 3 == 0 ? "NULL" : String.valueOf(i);
+                stmt.executeUpdate("INSERT INTO appointments (appointment_id, patient_id, doctor_id, appointment_date, slot_index) VALUES ("
+                        + i + ", " + i + ", " + (i % 5 + 1) + ", DATE '2031-03-" + (10 + i % 15) + "', " + slot + ")");
+            }
+            stmt.executeUpdate("INSERT INTO medical_conditions (patient_id, condition_text, recorded_at) VALUES "
+                    + "(1, 'Asthma', TIMESTAMP '2024-01-02 03:04:05.123456'), "
+                    + "(2, '" + LONG_HISTORY + "', TIMESTAMP '2024-02-03 04:05:06'), "
+                    + "(3, 'Diabète de type 2 — 糖尿病', TIMESTAMP '2024-03-04 05:06:07.5')");
+        }
+    }
+
+    @Test
+    void importRestoresEveryRow() throws Exception {
+        Map<Snapshot.Table, String> before = contents();
+        Path file = dir.resolve("round-trip.snapshot");
+
+        Snapshot.Report exported = Snapshot.export(file, 16);
+        assertEquals(40, exported.getRows(Snapshot.Table.PATIENTS));
+        assertEquals(5, exported.getRows(Snapshot.Table.DOCTORS));
+        assertEquals(30, exported.getRows(Snapshot.Table.APPOINTMENTS));
+        assertEquals(3, exported.getRows(Snapshot.Table.MEDICAL_CONDITIONS));
+
+        Snapshot.Report verified = Snapshot.verify(file);
+        for (Snapshot.Table table : Snapshot.Table.values()) {
+            assertEquals(exported.getRows(table), verified.getRows(table), table.tableName);
+        }
+
+        TestDatabase.clear();
+        Snapshot.Report imported = Snapshot.importFile(file, 2);
+        assertEquals(exported.getTotalRows(), imported.getTotalRows());
+        assertEquals(before, contents());
+    }
+
+    @Test
+    void exportLeavesTheIsolationLevelAsItWas() throws Exception {
+        int isolation;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            isolation = conn.getTransactionIsolation();
+        }
+        Snapshot.export(dir.resolve("isolation.snapshot"), 16);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            assertEquals(isolation, conn.getTransactionIsolation());
+        }
+    }
+
+    @Test
+    void verifyRejectsADamagedRowGroup() throws Exception {
+        Path file = dir.resolve("damaged.snapshot");
+        Snapshot.export(file, 16);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Inside the first patients row group, past the file and group headers
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, 40);
+            b.put(0, (byte) (b.get(0) ^ 0x5A)).rewind();
+            channel.write(b, 40);
+        }
+        assertThrows(IOException.class, () -> Snapshot.verify(file));
+    }
+
+    @Test
+    void importRefusesTablesThatHoldRows() throws Exception {
+        Path file = dir.resolve("occupied.snapshot");
+        Snapshot.export(file, 16);
+        assertThrows(IllegalStateException.class, () -> Snapshot.importFile(file, 2));
+        assertEquals(40, TestDatabase.count("SELECT COUNT(*) FROM patients"));
+    }
+
+    private static Map<Snapshot.Table, String> contents() throws SQLException {
+        Map<Snapshot.Table, String> contents = new EnumMap<>(Snapshot.Table.class);
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            for (Snapshot.Table table : Snapshot.Table.values()) {
+                StringBuilder rows = new StringBuilder();
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table.tableName + " ORDER BY " + table.columns[0].name)) {
+                    int columns = rs.getMetaData().getColumnCount();
+                    while (rs.next()) {
+                        for (int c = 1; c <= columns; c++) {
+                            rows.append(rs.getString(c)).append('|');
+                        }
+                        rows.append('\n');
+                    }
+                }
+                contents.put(table, rows.toString());
+            }
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,110 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StatementCacheTest {
+    private static final String URL = "jdbc:h2:mem:statement-cache-test;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String SELECT = "SELECT name FROM items WHERE id = ?";
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 2);
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS items (id INT PRIMARY KEY, name VARCHAR(20))");
+            stmt.executeUpdate("MERGE INTO items KEY (id) VALUES (1, 'one'), (2, 'two')");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void preparesEachSqlOncePerConnection() throws SQLException {
+        for (int id = 1; id <= 2; id++) {
+            try (Connection conn = pool.getConnection(); PreparedStatement pstmt = conn.prepareStatement(SELECT)) {
+                assertEquals(id == 1 ? "one" : "two", name(pstmt, id));
+            }
+        }
+        StatementCache.Stats stats = pool.getStatementCacheStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getHits());
+    }
+
+    @Test
+    void reusedStatementStartsWithoutParameters() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT)) {
+                pstmt.setInt(1, 1);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT)) {
+                assertThrows(SQLException.class, pstmt::executeQuery);
+            }
+        }
+    }
+
+    @Test
+    void sameSqlWhileInUseGetsItsOwnStatement() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement outer = conn.prepareStatement(SELECT);
+             PreparedStatement inner = conn.prepareStatement(SELECT)) {
+            assertEquals("one", name(outer, 1));
+            assertEquals("two", name(inner, 2));
+        }
+        assertEquals(2, pool.getStatementCacheStats().getMisses());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedStatement() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            for (String sql : new String[] { SELECT, "SELECT id FROM items WHERE name = ?", "SELECT COUNT(*) FROM items WHERE id > ?" }) {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setObject(1, sql.equals(SELECT) ? 1 : sql.contains("name") ? "one" : 0);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        assertTrue(rs.next());
+                    }
+                }
+            }
+            // The first statement was evicted, so preparing it again is a miss
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT)) {
+                assertEquals("one", name(pstmt, 1));
+            }
+        }
+        StatementCache.Stats stats = pool.getStatementCacheStats();
+        assertEquals(4, stats.getMisses());
+        assertEquals(2, stats.getEvictions());
+    }
+
+    @Test
+    void closedLeaseCannotBeUsed() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement pstmt = conn.prepareStatement(SELECT);
+            assertSame(conn, pstmt.getConnection());
+            pstmt.close();
+            assertTrue(pstmt.isClosed());
+            assertThrows(SQLException.class, () -> pstmt.setInt(1, 1));
+        }
+    }
+
+    private static String name(PreparedStatement pstmt, int id) throws SQLException {
+        pstmt.setInt(1, id);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
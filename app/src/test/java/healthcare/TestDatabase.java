@@ -0,0 +1,65 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Points {@link DatabaseManager} at an in-memory H2 database for the tests.
+ *
+ * H2 runs in MySQL mode so the production DDL and queries are used unchanged, as
+ * in the benchmarks. The entity cache is off so every lookup reads the tables.
+ * Test classes share the database, so each one uses its own ID range. Tests that
+ * need empty tables run in their own surefire execution, which names a separate
+ * database with healthcare.test.database.
+ */
+final class TestDatabase {
+    static final String H2_URL = "jdbc:h2:mem:" + System.getProperty("healthcare.test.database", "healthcare-test")
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static boolean started;
+
+    private TestDatabase() {
+    }
+
+    /** Sets the properties and creates the schema; must run before anything touches DatabaseManager. */
+    static synchronized void start() {
+        if (started) {
+            return;
+        }
+        System.setProperty("healthcare.db.url", H2_URL);
+        System.setProperty("healthcare.db.user", "sa");
+        System.setProperty("healthcare.db.password", "");
+        System.setProperty("healthcare.cache.maxEntries", "0");
+        DatabaseManager.initDatabase();
+        started = true;
+    }
+
+    /** Empties the four entity tables, children first; only for tests with a database of their own. */
+    static void clear() throws SQLException {
+        if (H2_URL.startsWith("jdbc:h2:mem:healthcare-test;")) {
+            throw new IllegalStateException("The shared test database must not be cleared");
+        }
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM appointments");
+            stmt.executeUpdate("DELETE FROM medical_conditions");
+            stmt.executeUpdate("DELETE FROM patients");
+            stmt.executeUpdate("DELETE FROM doctors");
+        }
+    }
+
+    static long count(String sql) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    static void execute(String sql) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package healthcare;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteBehindTest {
+    private static final int PATIENT_ID = 720_001;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void seedPatient() throws Exception {
+        TestDatabase.start();
+        if (DatabaseManager.getPatientById(PATIENT_ID) == null) {
+            DatabaseManager.insertPatient(new Patient(PATIENT_ID, "Journal Patient", 50, "M", "9876543210"));
+        }
+    }
+
+    @Test
+    void appliesWritesAndDeletesAppliedSegments() throws Exception {
+        WriteBehind writeBehind = new WriteBehind(dir.resolve("rotate.journal"), "test-rotate", 1000, 10, 1000, 512, false);
+        writeBehind.start();
+        List<WriteBehind.Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tickets.add(writeBehind.submitCondition(PATIENT_ID, "Rotated " + i));
+        }
+        for (WriteBehind.Ticket ticket : tickets) {
+            ticket.applied().join();
+        }
+        writeBehind.close();
+
+        assertEquals(500, conditions("Rotated %"));
+        assertEquals(500, writeBehind.getStats().getApplied());
+        // Hundreds of segments were written; only the one still open may be left
+        assertEquals(1, segments("rotate.journal").size());
+    }
+
+    @Test
+    void replaysJournaledWritesPastTheCheckpoint() throws Exception {
+        Path journal = dir.resolve("replay.journal");
+        WriteBehind first = new WriteBehind(journal, "test-replay", 100, 1, 1000, 1 << 20, true);
+        first.start();
+        long lastSeq = 0;
+        for (int i = 0; i < 5; i++) {
+            WriteBehind.Ticket ticket = first.submitCondition(PATIENT_ID, "Replayed " + i);
+            lastSeq = ticket.durable().join();
+            ticket.applied().join();
+        }
+        // What a crash would leave behind: the segment, with the last writes not yet in the database
+        Path backup = Files.createDirectory(dir.resolve("backup"));
+        for (Path segment : segments("replay.journal")) {
+            Files.copy(segment, backup.resolve(segment.getFileName()));
+        }
+        first.close();
+        for (Path segment : segments(backup, "replay.journal")) {
+            Files.copy(segment, dir.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+        TestDatabase.execute("DELETE FROM medical_conditions WHERE condition_text IN ('Replayed 3', 'Replayed 4')");
+        TestDatabase.execute("UPDATE write_behind_checkpoint SET last_seq = " + (lastSeq - 2) + " WHERE writer_id = 'test-replay'");
+        // And a torn record from an append that was cut off
+        Path last = segments("replay.journal").get(0);
+        Files.write(last, new byte[] { 0, 0, 0, 20, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        WriteBehind second = new WriteBehind(journal, "test-replay", 100, 1, 1000, 1 << 20, true);
+        second.start();
+        try {
+            assertEquals(5, conditions("Replayed %"));
+            assertEquals(lastSeq + 1, second.submitCondition(PATIENT_ID, "After replay").durable().join());
+        } finally {
+            second.close();
+        }
+        assertEquals(1, conditions("After replay"));
+    }
+
+    @Test
+    void rejectedWriteFailsOnlyItsOwnTicket() throws Exception {
+        WriteBehind writeBehind = new WriteBehind(dir.resolve("reject.journal"), "test-reject", 100, 100, 1000, 1 << 20, false);
+        writeBehind.start();
+        try {
+            WriteBehind.Ticket duplicate = writeBehind.submitPatient(new Patient(PATIENT_ID, "Duplicate", 1, "F", "9876543210"));
+            WriteBehind.Ticket condition = writeBehind.submitCondition(PATIENT_ID, "Next to a duplicate");
+            duplicate.durable().join();
+            CompletionException e = assertThrows(CompletionException.class, () -> duplicate.applied().join());
+            assertInstanceOf(SQLException.class, e.getCause());
+            condition.applied().join();
+        } finally {
+            writeBehind.close();
+        }
+        assertEquals(1, writeBehind.getStats().getFailed());
+        assertEquals(1, conditions("Next to a duplicate"));
+        assertEquals("Journal Patient", DatabaseManager.getPatientById(PATIENT_ID).getName());
+    }
+
+    @Test
+    void closeGivesUpOnAStalledDatabaseAndReplaysLater() throws Exception {
+        Path journal = dir.resolve("stalled.journal");
+        WriteBehind first = new WriteBehind(journal, "test-stalled", 100, 100, 1000, 1 << 20, true);
+        first.start();
+        WriteBehind.Ticket ticket;
+        // Holding the checkpoint row keeps every apply failing with a lock timeout, which is retried
+        try (Connection blocker = DatabaseManager.getConnection(); Statement stmt = blocker.createStatement()) {
+            blocker.setAutoCommit(false);
+            stmt.executeUpdate("UPDATE write_behind_checkpoint SET last_seq = last_seq WHERE writer_id = 'test-stalled'");
+            ticket = first.submitCondition(PATIENT_ID, "Stalled");
+            ticket.durable().join();
+            long start = System.nanoTime();
+            first.close(200);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(15));
+            blocker.rollback();
+        }
+        CompletionException e = assertThrows(CompletionException.class, () -> ticket.applied().join());
+        assertInstanceOf(SQLTransientException.class, e.getCause());
+        assertEquals(0, conditions("Stalled"));
+
+        WriteBehind second = new WriteBehind(journal, "test-stalled", 100, 100, 1000, 1 << 20, true);
+        second.start();
+        second.close();
+        assertEquals(1, conditions("Stalled"));
+    }
+
+    @Test
+    void refusesWritesOnceClosed() throws Exception {
+        WriteBehind writeBehind = new WriteBehind(dir.resolve("closed.journal"), "test-closed", 100, 100, 1000, 1 << 20, false);
+        writeBehind.start();
+        writeBehind.close();
+        assertThrows(SQLException.class, () -> writeBehind.submitCondition(PATIENT_ID, "Too late"));
+        assertEquals(0, conditions("Too late"));
+    }
+
+    private static long conditions(String pattern) throws SQLException {
+        return TestDatabase.count("SELECT COUNT(*) FROM medical_conditions WHERE patient_id = " + PATIENT_ID
+                + " AND condition_text LIKE '" + pattern + "'");
+    }
+
+    private List<Path> segments(String journal) throws IOException {
+        return segments(dir, journal);
+    }
+
+    private static List<Path> segments(Path in, String journal) throws IOException {
+        try (Stream<Path> files = Files.list(in)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(journal + "."))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
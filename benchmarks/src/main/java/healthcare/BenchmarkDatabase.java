@@ -0,0 +1,99 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Points {@link DatabaseManager} at an embedded H2 database for the benchmarks.
+ *
+ * H2 runs in MySQL mode so the production DDL and queries are used unchanged. Any
+ * healthcare.* property passed with -jvmArgsAppend wins over the defaults here,
+ * which is how the same benchmarks are run against a real MySQL server. The entity
+ * cache is off unless asked for, so lookups measure the database path.
+ */
+final class BenchmarkDatabase {
+    static final String H2_URL = "jdbc:h2:mem:healthcare;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static boolean started;
+
+    private BenchmarkDatabase() {
+    }
+
+    /** Sets the defaults and creates the schema; must run before anything touches DatabaseManager. */
+    static synchronized void start() {
+        if (started) {
+            return;
+        }
+        defaultProperty("healthcare.db.url", H2_URL);
+        defaultProperty("healthcare.db.user", "sa");
+        defaultProperty("healthcare.db.password", "");
+        defaultProperty("healthcare.cache.maxEntries", "0");
+        DatabaseManager.initDatabase();
+        started = true;
+    }
+
+    static String url() { return System.getProperty("healthcare.db.url"); }
+    static String user() { return System.getProperty("healthcare.db.user"); }
+    static String password() { return System.getProperty("healthcare.db.password"); }
+
+    private static void defaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    static Patient patient(int patientId) throws InvalidContactNumberException {
+        return new Patient(patientId, "Patient " + patientId, 20 + patientId % 60, patientId % 2 == 0 ? "F" : "M",
+                String.format("9%09d", patientId % 1_000_000_000));
+    }
+
+    /** Inserts count patients from firstId on, each with the given number of conditions. */
+    static void seedPatients(int firstId, int count, int conditionsPerPatient) throws SQLException, InvalidContactNumberException {
+        deletePatients(firstId, count);
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement patientStmt = conn.prepareStatement(DatabaseManager.INSERT_PATIENT_SQL);
+             PreparedStatement conditionStmt = conn.prepareStatement(DatabaseManager.INSERT_CONDITION_SQL)) {
+            conn.setAutoCommit(false);
+            for (int id = firstId; id < firstId + count; id++) {
+                DatabaseManager.bindPatient(patientStmt, patient(id));
+                patientStmt.addBatch();
+                for (int c = 0; c < conditionsPerPatient; c++) {
+                    DatabaseManager.bindConditions(conditionStmt, id, Collections.singletonList("Condition " + c));
+                }
+            }
+            patientStmt.executeBatch();
+            conditionStmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    /** Removes the doctors in [firstId, firstId + count) and their appointments. */
+    static void deleteDoctors(int firstId, int count) throws SQLException {
+        deleteRange(firstId, count, List.of(
+                "DELETE FROM appointments WHERE doctor_id >= ? AND doctor_id < ?",
+                "DELETE FROM doctors WHERE doctor_id >= ? AND doctor_id < ?"));
+    }
+
+    /** Removes the patients in [firstId, firstId + count) so repeated runs against MySQL start clean. */
+    static void deletePatients(int firstId, int count) throws SQLException {
+        deleteRange(firstId, count, List.of(
+                "DELETE FROM medical_conditions WHERE patient_id >= ? AND patient_id < ?",
+                "DELETE FROM appointments WHERE patient_id >= ? AND patient_id < ?",
+                "DELETE FROM patients WHERE patient_id >= ? AND patient_id < ?"));
+    }
+
+    private static void deleteRange(int firstId, int count, List<String> statements) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            for (String sql : statements) {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, firstId);
+                    pstmt.setLong(2, (long) firstId + count);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+}
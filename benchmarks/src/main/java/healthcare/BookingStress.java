@@ -0,0 +1,208 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded stress run for {@link BookingEngine}.
+ *
+ * Many threads book random patients with random doctors on a handful of days,
+ * first against a single doctor and then spread over all doctors. Afterwards the
+ * appointments table is checked for double-booked slots and days over capacity,
+ * and the throughput of both runs is printed. It ships in benchmarks.jar, which
+ * includes H2; point it at a scratch database, e.g.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar -Dhealthcare.db.url=jdbc:h2:mem:stress;MODE=MySQL;DB_CLOSE_DELAY=-1 \
+ *        healthcare.BookingStress --threads 64 --doctors 32 --days 5 --bookings 20000
+ *
+ * Exits with status 1 if any invariant is violated.
+ */
+class BookingStress {
+
+    // Seeded rows use IDs from here up so they never collide with real data
+    private static final int ID_BASE = 900_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = 32;
+        int doctors = 16;
+        int days = 5;
+        int bookings = 10_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--threads": threads = value; break;
+                case "--doctors": doctors = value; break;
+                case "--days": days = value; break;
+                case "--bookings": bookings = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        int patients = Math.max(100, threads * 4);
+
+        DatabaseManager.initDatabase();
+        BookingEngine engine = BookingEngine.fromSystemProperties();
+        boolean ok;
+        try {
+            cleanUp();
+            List<Doctor> doctorList = seedDoctors(doctors);
+            List<Patient> patientList = seedPatients(patients);
+            LocalDate firstDay = LocalDate.now().plusYears(50);
+
+            // Enough days that the single-doctor run is not just a stream of "fully booked" answers
+            int singleDays = Math.max(days, bookings / engine.getSlotsPerDay() + 1);
+            Run single = run(engine, threads, bookings, doctorList.subList(0, 1), patientList, firstDay, singleDays);
+            System.out.println("1 doctor:    " + single);
+            Run spread = run(engine, threads, bookings, doctorList, patientList, firstDay.plusDays(singleDays), days);
+            System.out.println(doctors + " doctors: " + spread);
+            System.out.printf("Speed-up with %d doctors: %.2fx%n", doctors, spread.perSecond() / single.perSecond());
+
+            ok = verify(engine, single.booked.get() + spread.booked.get());
+        } finally {
+            cleanUp();
+            DatabaseManager.shutdown();
+        }
+        System.out.println(ok ? "PASS: no double bookings, no day over capacity" : "FAIL");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static final class Run {
+        final AtomicLong booked = new AtomicLong();
+        final AtomicLong refused = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        long elapsedNanos;
+
+        double perSecond() {
+            long attempts = booked.get() + refused.get() + failed.get();
+            return attempts * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d booked, %d refused, %d errors in %d ms (%.0f bookings/s)",
+                    booked.get(), refused.get(), failed.get(), elapsedNanos / 1_000_000, perSecond());
+        }
+    }
+
+    private static Run run(BookingEngine engine, int threads, int bookings, List<Doctor> doctors,
+                           List<Patient> patients, LocalDate firstDay, int days) throws InterruptedException {
+        Run run = new Run();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong remaining = new AtomicLong(bookings);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (remaining.getAndDecrement() > 0) {
+                        Doctor doctor = doctors.get(random.nextInt(doctors.size()));
+                        Patient patient = patients.get(random.nextInt(patients.size()));
+                        String date = firstDay.plusDays(random.nextInt(days)).toString();
+                        try {
+                            engine.book(patient, doctor, date, null);
+                            run.booked.incrementAndGet();
+                        } catch (SlotUnavailableException e) {
+                            run.refused.incrementAndGet();
+                        } catch (Exception e) {
+                            run.failed.incrementAndGet();
+                            System.out.println("Booking error: " + e.getMessage());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "booker-" + t);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        run.elapsedNanos = System.nanoTime() - begin;
+        return run;
+    }
+
+    private static boolean verify(BookingEngine engine, long expectedRows) throws SQLException {
+        boolean ok = true;
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT doctor_id, appointment_date, slot_index, COUNT(*) AS total " +
+                    "FROM appointments WHERE doctor_id >= " + ID_BASE +
+                    " GROUP BY doctor_id, appointment_date, slot_index HAVING COUNT(*) > 1")) {
+                while (rs.next()) {
+                    ok = false;
+                    System.out.println("Double booked: doctor " + rs.getInt(1) + " on " + rs.getDate(2)
+                            + " slot " + rs.getInt(3) + " x" + rs.getInt(4));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT doctor_id, appointment_date, COUNT(*) AS total " +
+                    "FROM appointments WHERE doctor_id >= " + ID_BASE + " GROUP BY doctor_id, appointment_date")) {
+                while (rs.next()) {
+                    if (rs.getInt(3) > engine.getDailyCapacity(rs.getInt(1))) {
+                        ok = false;
+                        System.out.println("Over capacity: doctor " + rs.getInt(1) + " on " + rs.getDate(2)
+                                + " has " + rs.getInt(3));
+                    }
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM appointments WHERE doctor_id >= " + ID_BASE)) {
+                rs.next();
+                if (rs.getLong(1) != expectedRows) {
+                    ok = false;
+                    System.out.println("Expected " + expectedRows + " appointments but found " + rs.getLong(1));
+                }
+            }
+        }
+        return ok;
+    }
+
+    private static List<Doctor> seedDoctors(int count) throws Exception {
+        List<Doctor> doctors = new ArrayList<>(count);
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.INSERT_DOCTOR_SQL)) {
+            for (int i = 0; i < count; i++) {
+                Doctor doctor = new Doctor(ID_BASE + i, "Stress Doctor " + i, "General", "5550000000");
+                DatabaseManager.bindDoctor(pstmt, doctor);
+                pstmt.addBatch();
+                doctors.add(doctor);
+            }
+            pstmt.executeBatch();
+        }
+        return doctors;
+    }
+
+    private static List<Patient> seedPatients(int count) throws Exception {
+        List<Patient> patients = new ArrayList<>(count);
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.INSERT_PATIENT_SQL)) {
+            for (int i = 0; i < count; i++) {
+                Patient patient = new Patient(ID_BASE + i, "Stress Patient " + i, 40, "Other", "5550000000");
+                DatabaseManager.bindPatient(pstmt, patient);
+                pstmt.addBatch();
+                patients.add(patient);
+            }
+            pstmt.executeBatch();
+        }
+        return patients;
+    }
+
+    private static void cleanUp() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM appointments WHERE doctor_id >= " + ID_BASE + " OR patient_id >= " + ID_BASE);
+            stmt.executeUpdate("DELETE FROM medical_conditions WHERE patient_id >= " + ID_BASE);
+            stmt.executeUpdate("DELETE FROM doctors WHERE doctor_id >= " + ID_BASE);
+            stmt.executeUpdate("DELETE FROM patients WHERE patient_id >= " + ID_BASE);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package healthcare;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load-test harness for {@link HealthcareServer}.
+ *
+ * Starts the server in-process against whatever database the healthcare.db.*
+ * properties point at, seeds doctors and patients through the API, then keeps
+ * the given number of clients in flight at once with a mix of lookups,
+ * condition writes and bookings. Prints client-side latency percentiles and
+ * throughput, followed by the server's own /metrics. It ships in benchmarks.jar,
+ * for example
+ *
+ *   java -cp benchmarks/target/benchmarks.jar -Dhealthcare.db.url=jdbc:h2:mem:load;MODE=MySQL;DB_CLOSE_DELAY=-1 \
+ *        -Dhealthcare.db.pool.size=32 healthcare.LoadTest --clients 2000 --requests 200000
+ */
+class LoadTest {
+
+    private static final int ID_BASE = 800_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = 1000;
+        int requests = 100_000;
+        int doctors = 50;
+        int patients = 2000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--clients": clients = value; break;
+                case "--requests": requests = value; break;
+                case "--doctors": doctors = value; break;
+                case "--patients": patients = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        DatabaseManager.initDatabase();
+        cleanUp();
+        HealthcareServer server = new HealthcareServer(0, BookingEngine.fromSystemProperties());
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            seed(client, base, doctors, patients);
+
+            LatencyHistogram latency = new LatencyHistogram();
+            AtomicLong errors = new AtomicLong();
+            Semaphore inFlight = new Semaphore(clients);
+            LocalDate firstDay = LocalDate.now().plusYears(60);
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                inFlight.acquire();
+                HttpRequest request = randomRequest(base, doctors, patients, firstDay);
+                long sent = System.nanoTime();
+                CompletableFuture<HttpResponse<String>> response = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+                response.whenComplete((r, e) -> {
+                    latency.record(System.nanoTime() - sent);
+                    // 409 is an expected answer once a doctor's day fills up
+                    if (e != null || (r.statusCode() >= 400 && r.statusCode() != 409)) {
+                        errors.incrementAndGet();
+                    }
+                    inFlight.release();
+                });
+            }
+            inFlight.acquire(clients);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%d requests with %d concurrent clients in %.2f s (%.0f req/s), %d errors%n",
+                    requests, clients, elapsed / 1e9, requests * 1e9 / elapsed, errors.get());
+            System.out.println("Client latency: " + latency);
+            HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(URI.create(base + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            System.out.println("Server metrics: " + metrics.body());
+        } finally {
+            server.stop();
+            cleanUp();
+            DatabaseManager.shutdown();
+        }
+    }
+
+    private static HttpRequest randomRequest(String base, int doctors, int patients, LocalDate firstDay) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int patientId = ID_BASE + random.nextInt(patients);
+        int doctorId = ID_BASE + random.nextInt(doctors);
+        int roll = random.nextInt(100);
+        if (roll < 60) {
+            return get(base + "/patients/" + patientId);
+        } else if (roll < 80) {
+            return get(base + "/doctors/" + doctorId);
+        } else if (roll < 90) {
+            return post(base + "/patients/" + patientId + "/conditions", "{\"condition\":\"Load test " + roll + "\"}");
+        }
+        String date = firstDay.plusDays(random.nextInt(30)).toString();
+        return post(base + "/appointments", "{\"patientId\":" + patientId + ",\"doctorId\":" + doctorId
+                + ",\"date\":\"" + date + "\"}");
+    }
+
+    private static void seed(HttpClient client, String base, int doctors, int patients) throws Exception {
+        for (int i = 0; i < doctors; i++) {
+            expectCreated(client, post(base + "/doctors", "{\"id\":" + (ID_BASE + i) + ",\"name\":\"Load Doctor " + i
+                    + "\",\"specialization\":\"General\",\"contactNumber\":\"5550000000\"}"));
+        }
+        for (int i = 0; i < patients; i++) {
+            expectCreated(client, post(base + "/patients", "{\"id\":" + (ID_BASE + i) + ",\"name\":\"Load Patient " + i
+                    + "\",\"age\":40,\"gender\":\"Other\",\"contactNumber\":\"5550000000\"}"));
+        }
+    }
+
+    private static void expectCreated(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Seeding failed: " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private static void cleanUp() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM appointments WHERE doctor_id >= " + ID_BASE + " OR patient_id >= " + ID_BASE);
+            stmt.executeUpdate("DELETE FROM medical_conditions WHERE patient_id >= " + ID_BASE);
+            stmt.executeUpdate("DELETE FROM doctors WHERE doctor_id >= " + ID_BASE);
+            stmt.executeUpdate("DELETE FROM patients WHERE patient_id >= " + ID_BASE);
+        }
+    }
+}
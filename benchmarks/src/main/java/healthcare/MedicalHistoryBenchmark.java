@@ -0,0 +1,71 @@
+package healthcare;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building up a patient's medical history in memory, and reconstructing it from the
+ * medical_conditions rows when the patient is read back with getPatientById.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MedicalHistoryBenchmark {
+    private static final int FIRST_PATIENT_ID = 910_000_000;
+
+    @Param({ "1", "10", "100" })
+    public int conditions;
+
+    private String[] conditionTexts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, InvalidContactNumberException {
+        BenchmarkDatabase.start();
+        conditionTexts = new String[conditions];
+        for (int i = 0; i < conditions; i++) {
+            conditionTexts[i] = "Condition " + i;
+        }
+        BenchmarkDatabase.seedPatients(FIRST_PATIENT_ID, 1, conditions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, 1);
+    }
+
+    @Benchmark
+    public String addConditionsInMemory() throws InvalidContactNumberException {
+        Patient patient = new Patient(FIRST_PATIENT_ID, "Bench Patient", 40, "F", "9876543210");
+        for (String condition : conditionTexts) {
+            patient.addMedicalCondition(condition);
+        }
+        return patient.getMedicalHistory();
+    }
+
+    @Benchmark
+    public String getPatientByIdWithHistory() {
+        Patient patient = DatabaseManager.getPatientById(FIRST_PATIENT_ID);
+        return patient.getMedicalHistory();
+    }
+
+    @Benchmark
+    public Object getPatientByIdWithoutHistory() {
+        return DatabaseManager.getPatientById(FIRST_PATIENT_ID);
+    }
+}
@@ -0,0 +1,70 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Patient rows per second through the single-row insert used by createPatient and
+ * through a batched insert like the bulk loader's. Scores are per row either way.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatientInsertBenchmark {
+    private static final int FIRST_PATIENT_ID = 920_000_000;
+    private static final int MAX_PATIENTS = 50_000_000;
+    private static final int BATCH_SIZE = 100;
+
+    private int nextPatientId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start();
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, MAX_PATIENTS);
+        nextPatientId = FIRST_PATIENT_ID;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, MAX_PATIENTS);
+    }
+
+    @Benchmark
+    public void singleRow() throws SQLException, InvalidContactNumberException {
+        DatabaseManager.insertPatient(BenchmarkDatabase.patient(nextPatientId++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] batched() throws SQLException, InvalidContactNumberException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.INSERT_PATIENT_SQL)) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                DatabaseManager.bindPatient(pstmt, BenchmarkDatabase.patient(nextPatientId++));
+                pstmt.addBatch();
+            }
+            int[] counts = pstmt.executeBatch();
+            conn.commit();
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Patient lookups per second through DatabaseManager's pooled connections and cached
+ * statements, against opening a fresh DriverManager connection for every lookup as
+ * the application did before the pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PatientLookupBenchmark {
+    private static final int FIRST_PATIENT_ID = 930_000_000;
+    private static final int PATIENTS = 1000;
+    private static final String SELECT_PATIENT_SQL = "SELECT name, age, gender, contact_number FROM patients WHERE patient_id = ?";
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, InvalidContactNumberException {
+        BenchmarkDatabase.start();
+        BenchmarkDatabase.seedPatients(FIRST_PATIENT_ID, PATIENTS, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, PATIENTS);
+    }
+
+    private static int randomPatientId() {
+        return FIRST_PATIENT_ID + ThreadLocalRandom.current().nextInt(PATIENTS);
+    }
+
+    @Benchmark
+    public Object pooled() {
+        return DatabaseManager.getPatientById(randomPatientId());
+    }
+
+    @Benchmark
+    public Object connectionPerLookup() throws SQLException, InvalidContactNumberException {
+        int patientId = randomPatientId();
+        try (Connection conn = DriverManager.getConnection(BenchmarkDatabase.url(), BenchmarkDatabase.user(), BenchmarkDatabase.password());
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_PATIENT_SQL)) {
+            pstmt.setInt(1, patientId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return new Patient(patientId, rs.getString("name"), rs.getInt("age"), rs.getString("gender"), rs.getString("contact_number"));
+            }
+            return null;
+        }
+    }
+}
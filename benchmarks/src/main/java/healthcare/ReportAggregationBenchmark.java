@@ -0,0 +1,77 @@
+package healthcare;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting synthetic appointments per (doctor, day), without the database: the
+ * striped fork-join aggregation the reports use, one primitive counter on one
+ * thread, and a boxed HashMap as the straightforward alternative. The fork-join
+ * score only improves on the sequential one with more than one core.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ReportAggregationBenchmark {
+    private static final int DOCTORS = 1000;
+    private static final int DAYS = 365;
+
+    @Param({ "2000000", "8000000" })
+    public int appointments;
+
+    private int[] doctorIds;
+    private int[] epochDays;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int firstDay = (int) LocalDate.of(2026, 1, 1).toEpochDay();
+        doctorIds = new int[appointments];
+        epochDays = new int[appointments];
+        for (int i = 0; i < appointments; i++) {
+            doctorIds[i] = 1 + random.nextInt(DOCTORS);
+            epochDays[i] = firstDay + random.nextInt(DAYS);
+        }
+    }
+
+    @Benchmark
+    public Reports.StripedCounter forkJoin() {
+        return Reports.countDoctorDays(doctorIds, epochDays, appointments);
+    }
+
+    @Benchmark
+    public Reports.LongCounter sequential() {
+        Reports.LongCounter counts = new Reports.LongCounter(1024);
+        for (int i = 0; i < appointments; i++) {
+            counts.add(Reports.doctorDayKey(doctorIds[i], epochDays[i]), 1);
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public Map<Long, Long> boxedHashMap() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (int i = 0; i < appointments; i++) {
+            counts.merge(Reports.doctorDayKey(doctorIds[i], epochDays[i]), 1L, Long::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,136 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Report refreshes over a synthetic database of patients, doctors, conditions and
+ * a few million appointments: a full rebuild, and an incremental refresh after
+ * NEW_APPOINTMENTS have been booked. Seeding takes a while on H2; the row counts
+ * are printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ReportRefreshBenchmark {
+    private static final int FIRST_PATIENT_ID = 930_000_000;
+    private static final int FIRST_DOCTOR_ID = 930_000_000;
+    private static final int PATIENTS = 200_000;
+    private static final int DOCTORS = 1000;
+    private static final int NEW_APPOINTMENTS = 1000;
+    private static final String INSERT_APPOINTMENT = "INSERT INTO appointments (patient_id, doctor_id, appointment_date) VALUES (?, ?, ?)";
+
+    private static final String[] SPECIALIZATIONS = { "Cardiology", "Dermatology", "Endocrinology", "Neurology",
+            "Oncology", "Orthopedics", "Pediatrics", "Psychiatry" };
+    private static final String[] CONDITIONS = { "Hypertension", "Type 2 diabetes", "Asthma", "Migraine",
+            "Hypothyroidism", "Osteoarthritis", "Anemia", "Seasonal allergies", "Depression", "Psoriasis" };
+
+    @Param({ "2000000" })
+    public int appointments;
+
+    private Reports reports;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, InvalidContactNumberException {
+        BenchmarkDatabase.start();
+        BenchmarkDatabase.seedPatients(FIRST_PATIENT_ID, PATIENTS, 0);
+        BenchmarkDatabase.deleteDoctors(FIRST_DOCTOR_ID, DOCTORS);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.INSERT_DOCTOR_SQL)) {
+                for (int i = 0; i < DOCTORS; i++) {
+                    pstmt.setInt(1, FIRST_DOCTOR_ID + i);
+                    pstmt.setString(2, "Doctor " + i);
+                    pstmt.setString(3, SPECIALIZATIONS[i % SPECIALIZATIONS.length]);
+                    pstmt.setString(4, "9876543210");
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.INSERT_CONDITION_SQL)) {
+                for (int i = 0; i < PATIENTS * 2; i++) {
+                    pstmt.setInt(1, FIRST_PATIENT_ID + i % PATIENTS);
+                    pstmt.setString(2, CONDITIONS[random.nextInt(CONDITIONS.length)]);
+                    pstmt.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        pstmt.executeBatch();
+                    }
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+        }
+        insertAppointments(appointments);
+        reports = DatabaseManager.getReports();
+        reports.refresh();
+        System.out.println();
+        System.out.println("Reports: " + reports.getStats());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.deleteDoctors(FIRST_DOCTOR_ID, DOCTORS);
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, PATIENTS);
+    }
+
+    // Appointments over a year, committed in batches
+    private void insertAppointments(int count) throws SQLException {
+        LocalDate firstDay = LocalDate.of(2026, 1, 1);
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_APPOINTMENT)) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                pstmt.setInt(1, FIRST_PATIENT_ID + random.nextInt(PATIENTS));
+                pstmt.setInt(2, FIRST_DOCTOR_ID + random.nextInt(DOCTORS));
+                pstmt.setDate(3, java.sql.Date.valueOf(firstDay.plusDays(random.nextInt(365))));
+                pstmt.addBatch();
+                if (i % 10_000 == 9_999) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewAppointments {
+        @Setup(Level.Invocation)
+        public void book(ReportRefreshBenchmark benchmark) throws SQLException {
+            benchmark.insertAppointments(NEW_APPOINTMENTS);
+        }
+    }
+
+    @Benchmark
+    public long fullRefresh() throws SQLException {
+        reports.invalidate();
+        return reports.refresh();
+    }
+
+    @Benchmark
+    public long incrementalRefresh(NewAppointments booked) throws SQLException {
+        return reports.refresh();
+    }
+}
@@ -0,0 +1,184 @@
+package healthcare;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The in-memory search index against the SQL LIKE scans that give the same
+ * answers. Runs in sample mode so the JSON results carry p99 and p99.9 latencies.
+ * The index size is printed at setup.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+    private static final int FIRST_PATIENT_ID = 940_000_000;
+    private static final int FIRST_DOCTOR_ID = 940_000_000;
+    private static final int DOCTORS = 1000;
+    private static final int LIMIT = SearchIndex.DEFAULT_LIMIT;
+
+    private static final String[] FIRST_NAMES = { "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael",
+            "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+            "Sarah", "Charles", "Karen", "Priya", "Arjun", "Dilna", "Anjali", "Rahul", "Meera", "Wei", "Yuki" };
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+            "Jackson", "Martin", "Lee", "Nair", "Menon", "Shaji", "Pillai", "Kumar", "Chen", "Tanaka", "Okafor" };
+    private static final String[] CONDITIONS = { "Hypertension", "Type 2 diabetes", "Asthma", "Migraine",
+            "Chronic kidney disease", "Hypothyroidism", "Osteoarthritis", "Atrial fibrillation", "Anemia",
+            "Seasonal allergies", "Coronary artery disease", "Depression", "Gastroesophageal reflux", "Psoriasis" };
+    private static final String[] SPECIALIZATIONS = { "Cardiology", "Dermatology", "Endocrinology", "Gastroenterology",
+            "General Practice", "Nephrology", "Neurology", "Oncology", "Orthopedics", "Pediatrics", "Psychiatry",
+            "Pulmonology", "Rheumatology", "Urology" };
+
+    private static final String[] NAME_QUERIES = { "smi", "john", "pat", "me", "nair", "jo sm", "ri mar", "chen" };
+    private static final String[] CONDITION_QUERIES = { "diab", "hyper", "asth", "kidney", "art", "fib", "mig", "psor" };
+    private static final String[] SPECIALIZATION_QUERIES = { "card", "neuro", "ped", "onc", "gen", "uro", "psy", "derm" };
+
+    private static final String SQL_NAME = "SELECT patient_id, name FROM patients WHERE LOWER(name) LIKE ? OR LOWER(name) LIKE ? LIMIT ?";
+    private static final String SQL_CONDITION = "SELECT DISTINCT p.patient_id, p.name FROM medical_conditions c " +
+            "JOIN patients p ON p.patient_id = c.patient_id WHERE LOWER(c.condition_text) LIKE ? OR LOWER(c.condition_text) LIKE ? LIMIT ?";
+    private static final String SQL_SPECIALIZATION = "SELECT doctor_id, name, specialization FROM doctors " +
+            "WHERE LOWER(specialization) LIKE ? OR LOWER(specialization) LIKE ? LIMIT ?";
+
+    @Param({ "10000", "100000" })
+    public int patients;
+
+    private SearchIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start();
+        seed();
+        DatabaseManager.rebuildSearchIndex();
+        index = DatabaseManager.getSearchIndex();
+        System.out.println();
+        System.out.println("Search index: " + index.getStats());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, patients);
+        BenchmarkDatabase.deleteDoctors(FIRST_DOCTOR_ID, DOCTORS);
+        DatabaseManager.rebuildSearchIndex();
+    }
+
+    private void seed() throws SQLException {
+        BenchmarkDatabase.deletePatients(FIRST_PATIENT_ID, patients);
+        BenchmarkDatabase.deleteDoctors(FIRST_DOCTOR_ID, DOCTORS);
+        Random random = new Random(42);
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement patientStmt = conn.prepareStatement(DatabaseManager.INSERT_PATIENT_SQL);
+             PreparedStatement conditionStmt = conn.prepareStatement(DatabaseManager.INSERT_CONDITION_SQL);
+             PreparedStatement doctorStmt = conn.prepareStatement(DatabaseManager.INSERT_DOCTOR_SQL)) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < patients; i++) {
+                int id = FIRST_PATIENT_ID + i;
+                patientStmt.setInt(1, id);
+                patientStmt.setString(2, pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES));
+                patientStmt.setInt(3, 1 + random.nextInt(95));
+                patientStmt.setString(4, random.nextBoolean() ? "F" : "M");
+                patientStmt.setString(5, "9876543210");
+                patientStmt.addBatch();
+                int conditions = random.nextInt(3);
+                for (int c = 0; c < conditions; c++) {
+                    conditionStmt.setInt(1, id);
+                    conditionStmt.setString(2, pick(random, CONDITIONS));
+                    conditionStmt.addBatch();
+                }
+                if (i % 1000 == 999) {
+                    patientStmt.executeBatch();
+                    conditionStmt.executeBatch();
+                }
+            }
+            patientStmt.executeBatch();
+            conditionStmt.executeBatch();
+            for (int i = 0; i < DOCTORS; i++) {
+                doctorStmt.setInt(1, FIRST_DOCTOR_ID + i);
+                doctorStmt.setString(2, "Dr. " + pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES));
+                doctorStmt.setString(3, pick(random, SPECIALIZATIONS));
+                doctorStmt.setString(4, "9876543210");
+                doctorStmt.addBatch();
+            }
+            doctorStmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private String nextQuery(String[] queries) {
+        return queries[next++ & 7];
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> indexPatientName() {
+        return index.findPatientsByName(nextQuery(NAME_QUERIES), LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> indexPatientCondition() {
+        return index.findPatientsByCondition(nextQuery(CONDITION_QUERIES), LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> indexDoctorSpecialization() {
+        return index.findDoctorsBySpecialization(nextQuery(SPECIALIZATION_QUERIES), LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> sqlPatientName() throws SQLException {
+        return likeScan(SQL_NAME, nextQuery(NAME_QUERIES));
+    }
+
+    @Benchmark
+    public List<Integer> sqlPatientCondition() throws SQLException {
+        return likeScan(SQL_CONDITION, nextQuery(CONDITION_QUERIES));
+    }
+
+    @Benchmark
+    public List<Integer> sqlDoctorSpecialization() throws SQLException {
+        return likeScan(SQL_SPECIALIZATION, nextQuery(SPECIALIZATION_QUERIES));
+    }
+
+    // Word-prefix match in SQL: the text starts with the term or has it after a space, ignoring case.
+    // Multi-word queries are matched as one phrase here, which is the closest LIKE gets.
+    private static List<Integer> likeScan(String sql, String term) throws SQLException {
+        List<Integer> ids = new ArrayList<>(LIMIT);
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, term + "%");
+            pstmt.setString(2, "% " + term + "%");
+            pstmt.setInt(3, LIMIT);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,74 @@
+package healthcare;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the field validation run for every patient, doctor and appointment that is
+ * created, for both accepted and rejected input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+    private static final String[] VALID_CONTACTS = { "9876543210", "0123456789", "5550001111", "9999999999" };
+    private static final String[] INVALID_CONTACTS = { "98765x3210", "12345", "98765432101", " 987654321" };
+    private static final String[] VALID_DATES = { "2024-01-15", "2025-12-31", "2023-06-01", "2026-02-28" };
+    private static final String[] INVALID_DATES = { "2024/01/15", "2024-13-45", "2024-1-15", "2023-02-29" };
+
+    private Patient patient;
+    private Doctor doctor;
+    private int next;
+
+    @Setup
+    public void setUp() throws InvalidContactNumberException {
+        patient = new Patient(1, "Bench Patient", 40, "F", "9876543210");
+        doctor = new Doctor(1, "Bench Doctor", "Cardiology", "9876543211");
+    }
+
+    private int nextIndex() {
+        return next++ & 3;
+    }
+
+    @Benchmark
+    public Patient contactNumberValid() throws InvalidContactNumberException {
+        patient.setContactNumber(VALID_CONTACTS[nextIndex()]);
+        return patient;
+    }
+
+    @Benchmark
+    public Object contactNumberInvalid() {
+        try {
+            patient.setContactNumber(INVALID_CONTACTS[nextIndex()]);
+            return patient;
+        } catch (InvalidContactNumberException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Appointment appointmentDateValid() throws InvalidDateFormatException {
+        return new Appointment(1, patient, doctor, VALID_DATES[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object appointmentDateInvalid() {
+        try {
+            return new Appointment(1, patient, doctor, INVALID_DATES[nextIndex()]);
+        } catch (InvalidDateFormatException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package healthcare;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conditions added per second by many concurrent callers, written synchronously
+ * with autocommit as addMedicalCondition does by default, and through write-behind
+ * group commits. The write-behind scores are measured both to the durable ack
+ * (journaled and fsynced) that callers wait for, and to the database commit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+    private static final int PATIENT_ID = 950_000_000;
+    private static final String WRITER_ID = "benchmark";
+
+    @Param({"true", "false"})
+    public boolean fsync;
+
+    private Path journalDir;
+    private WriteBehind writeBehind;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException, InvalidContactNumberException {
+        BenchmarkDatabase.start();
+        BenchmarkDatabase.seedPatients(PATIENT_ID, 1, 0);
+        deleteCheckpoint();
+        journalDir = Files.createTempDirectory("write-behind-benchmark");
+        writeBehind = new WriteBehind(journalDir.resolve("writes.journal"), WRITER_ID, 10_000, 500, 30_000, 64L * 1024 * 1024, fsync);
+        writeBehind.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        writeBehind.close();
+        System.out.println();
+        System.out.println("Write-behind: " + writeBehind.getStats());
+        // The journal segments, then the directory itself
+        try (Stream<Path> files = Files.walk(journalDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        deleteCheckpoint();
+        BenchmarkDatabase.deletePatients(PATIENT_ID, 1);
+    }
+
+    private static void deleteCheckpoint() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM write_behind_checkpoint WHERE writer_id = ?")) {
+            pstmt.setString(1, WRITER_ID);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            // The table only exists once a write-behind pipeline has started
+        }
+    }
+
+    @Benchmark
+    public boolean synchronous() {
+        return DatabaseManager.addMedicalCondition(PATIENT_ID, "Synchronous");
+    }
+
+    @Benchmark
+    public Long writeBehindDurable() throws SQLException {
+        return writeBehind.submitCondition(PATIENT_ID, "Write-behind").durable().join();
+    }
+
+    @Benchmark
+    public Void writeBehindApplied() throws SQLException {
+        return writeBehind.submitCondition(PATIENT_ID, "Write-behind").applied().join();
+    }
+}